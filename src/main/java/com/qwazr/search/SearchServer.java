@@ -17,6 +17,7 @@ package com.qwazr.search;
 
 import com.qwazr.classloader.ClassLoaderManager;
 import com.qwazr.cluster.ClusterManager;
+import com.qwazr.search.index.IndexExecutors;
 import com.qwazr.search.index.IndexManager;
 import com.qwazr.search.index.IndexServiceBuilder;
 import com.qwazr.server.BaseServer;
@@ -26,8 +27,6 @@ import com.qwazr.server.configuration.ServerConfiguration;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class SearchServer implements BaseServer {
 
@@ -35,13 +34,14 @@ public class SearchServer implements BaseServer {
 	private final IndexServiceBuilder serviceBuilder;
 
 	private SearchServer(final ServerConfiguration configuration) throws IOException, URISyntaxException {
-		final ExecutorService executorService = Executors.newCachedThreadPool();
-		final GenericServer.Builder builder = GenericServer.of(configuration, executorService);
+		final IndexExecutors executors = IndexExecutors.of();
+		final GenericServer.Builder builder = GenericServer.of(configuration, executors.getRequestExecutor());
 		builder.webService(WelcomeShutdownService.class);
 		final ClassLoaderManager classLoaderManager =
 				new ClassLoaderManager(configuration.dataDirectory, Thread.currentThread());
 		final ClusterManager clusterManager = new ClusterManager(builder);
-		final IndexManager indexManager = new IndexManager(classLoaderManager, builder, executorService);
+		final IndexManager indexManager = new IndexManager(classLoaderManager, builder, executors);
+		builder.shutdownListener(server -> executors.close());
 		serviceBuilder = new IndexServiceBuilder(clusterManager, indexManager);
 		server = builder.build();
 	}
@@ -369,6 +369,16 @@ public class AnnotatedIndexService<T> extends FieldMapWrapper<T> {
 		return indexService.getIndex(schemaName, indexName);
 	}
 
+	/**
+	 * Read-your-writes: the returned value can be passed to QueryBuilder.waitForSeqNo
+	 *
+	 * @return the sequence number of the last completed write, or null for a slave index
+	 */
+	public Long getSequenceNumber() {
+		checkParameters();
+		return indexService.getSequenceNumber(schemaName, indexName);
+	}
+
 	public LinkedHashMap<String, FieldDefinition> getFields() {
 		checkParameters();
 		return indexService.getFields(schemaName, indexName);
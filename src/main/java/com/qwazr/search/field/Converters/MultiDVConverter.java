@@ -15,14 +15,12 @@
  */
 package com.qwazr.search.field.Converters;
 
-
-import com.qwazr.utils.ReflectiveUtils;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.NumericUtils;
 
-import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.function.Supplier;
 
 public abstract class MultiDVConverter<T extends SortedNumericDocValues, V, A> extends ValueConverter<T, A> {
 
@@ -33,28 +31,26 @@ public abstract class MultiDVConverter<T extends SortedNumericDocValues, V, A> e
 	protected abstract V valueAt(int pos);
 
 	@Override
-	final public void fillCollection(final Object record, final Field field, final Class<?> fieldClass, final int docId)
-			throws ReflectiveOperationException {
+	final public void fillCollection(final int docId, final Supplier<Collection<Object>> collectionSupplier) {
 		source.setDocument(docId);
 		final int count = source.count();
 		if (count == 0)
 			return;
-		Collection<V> collection = ReflectiveUtils.getCollection(record, field, fieldClass);
+		final Collection<Object> collection = collectionSupplier.get();
 		for (int i = 0; i < count; i++)
 			collection.add(valueAt(i));
 	}
 
-	final public void fillSingleValue(final Object record, final Field field, final int docId)
-			throws ReflectiveOperationException {
+	@Override
+	final public Object getSingleValue(final String fieldName, final int docId) {
 		source.setDocument(docId);
 		final int count = source.count();
 		if (count == 0)
-			return;
+			return null;
 		if (count > 1)
 			throw new RuntimeException(
-					"Cannot fill several values on this field. It should be a collection: " +
-							field.getName());
-		field.set(record, valueAt(0));
+					"Cannot fill several values on this field. It should be a collection: " + fieldName);
+		return valueAt(0);
 	}
 
 
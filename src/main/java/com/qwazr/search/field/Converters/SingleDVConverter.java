@@ -15,15 +15,14 @@
  */
 package com.qwazr.search.field.Converters;
 
-
-import com.qwazr.utils.ReflectiveUtils;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 
-import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.function.Supplier;
 
 public abstract class SingleDVConverter<T, V> extends ValueConverter<T, V> {
 
@@ -32,20 +31,16 @@ public abstract class SingleDVConverter<T, V> extends ValueConverter<T, V> {
 	}
 
 	@Override
-	final public void fillCollection(final Object record, final Field field, final Class<?> fieldClass, final int docId)
-			throws ReflectiveOperationException {
+	final public void fillCollection(final int docId, final Supplier<Collection<Object>> collectionSupplier) {
 		final V value = convert(docId);
 		if (value == null)
 			return;
-		ReflectiveUtils.<V>getCollection(record, field, fieldClass).add(value);
+		collectionSupplier.get().add(value);
 	}
 
-	final public void fillSingleValue(final Object record, final Field field, final int docId)
-			throws ReflectiveOperationException {
-		final V value = convert(docId);
-		if (value == null)
-			return;
-		field.set(record, value);
+	@Override
+	final public Object getSingleValue(final String fieldName, final int docId) {
+		return convert(docId);
 	}
 
 	public static class DoubleDVConverter extends SingleDVConverter<NumericDocValues, Double> {
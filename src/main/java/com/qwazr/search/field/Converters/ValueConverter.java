@@ -16,10 +16,15 @@
 package com.qwazr.search.field.Converters;
 
 import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.utils.ReflectiveUtils;
 import org.apache.lucene.index.*;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
 
 public abstract class ValueConverter<T, V> {
 
@@ -34,11 +39,44 @@ public abstract class ValueConverter<T, V> {
 
 	public abstract V convert(final int docId);
 
-	public abstract void fillCollection(final Object record, final Field field, final Class<?> fieldClass,
-			final int docId) throws ReflectiveOperationException;
+	/**
+	 * Add the values of the document to a collection
+	 *
+	 * @param docId              the document
+	 * @param collectionSupplier called only if the document has at least one value
+	 */
+	public abstract void fillCollection(final int docId, final Supplier<Collection<Object>> collectionSupplier);
 
-	public abstract void fillSingleValue(final Object record, final Field field, final int docId)
-			throws ReflectiveOperationException;
+	/**
+	 * @param fieldName the name of the field (for the error message)
+	 * @param docId     the document
+	 * @return the unique value of the document, or null if there is no value
+	 */
+	public abstract Object getSingleValue(final String fieldName, final int docId);
+
+	/**
+	 * @deprecated use {@link #fillCollection(int, Supplier)}
+	 */
+	@Deprecated
+	public void fillCollection(final Object record, final Field field, final Class<?> fieldClass, final int docId)
+			throws ReflectiveOperationException {
+		// The collection of the record is only created if the document has at least one value
+		final List<Object> values = new ArrayList<>();
+		fillCollection(docId, () -> values);
+		if (!values.isEmpty())
+			ReflectiveUtils.<Object>getCollection(record, field, fieldClass).addAll(values);
+	}
+
+	/**
+	 * @deprecated use {@link #getSingleValue(String, int)}
+	 */
+	@Deprecated
+	public void fillSingleValue(final Object record, final Field field, final int docId)
+			throws ReflectiveOperationException {
+		final Object value = getSingleValue(field.getName(), docId);
+		if (value != null)
+			field.set(record, value);
+	}
 
 	private final static ValueConverter newNumericConverter(FieldDefinition fieldDef, NumericDocValues numericDocValues)
 			throws IOException {
@@ -37,10 +37,14 @@ class DoubleDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new DoubleDocValuesField(fieldName, ((Number) value).doubleValue()));
-		else
-			consumer.accept(fieldName, new DoubleDocValuesField(fieldName, Double.parseDouble(value.toString())));
+		fillDouble(fieldName,
+				value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillDouble(final String fieldName, final double value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new DoubleDocValuesField(fieldName, value));
 	}
 
 	@Override
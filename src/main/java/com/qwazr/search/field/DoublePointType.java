@@ -30,11 +30,16 @@ class DoublePointType extends StorableFieldType {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		double doubleValue =
-				value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
-		consumer.accept(fieldName, new DoublePoint(fieldName, doubleValue));
+		fillDouble(fieldName,
+				value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillDouble(final String fieldName, final double value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new DoublePoint(fieldName, value));
 		if (store == Field.Store.YES)
-			consumer.accept(fieldName, new StoredField(fieldName, doubleValue));
+			consumer.accept(fieldName, new StoredField(fieldName, value));
 	}
 
 }
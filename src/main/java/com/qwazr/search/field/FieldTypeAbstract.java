@@ -42,22 +42,22 @@ abstract class FieldTypeAbstract implements FieldTypeInterface {
 
 	protected void fillArray(final String fieldName, final int[] values, final FieldConsumer consumer) {
 		for (int value : values)
-			fill(fieldName, value, consumer);
+			fillInt(fieldName, value, consumer);
 	}
 
 	protected void fillArray(final String fieldName, final long[] values, final FieldConsumer consumer) {
 		for (long value : values)
-			fill(fieldName, value, consumer);
+			fillLong(fieldName, value, consumer);
 	}
 
 	protected void fillArray(final String fieldName, final double[] values, final FieldConsumer consumer) {
 		for (double value : values)
-			fill(fieldName, value, consumer);
+			fillDouble(fieldName, value, consumer);
 	}
 
 	protected void fillArray(final String fieldName, final float[] values, final FieldConsumer consumer) {
 		for (float value : values)
-			fill(fieldName, value, consumer);
+			fillFloat(fieldName, value, consumer);
 	}
 
 	protected void fillArray(final String fieldName, final Object[] values, final FieldConsumer consumer) {
@@ -73,7 +73,17 @@ abstract class FieldTypeAbstract implements FieldTypeInterface {
 	protected void fillCollection(final String fieldName, final Collection<Object> values,
 			final FieldConsumer consumer) {
 		values.forEach(value -> {
-			if (value != null)
+			if (value == null)
+				return;
+			if (value instanceof Integer)
+				fillInt(fieldName, (Integer) value, consumer);
+			else if (value instanceof Long)
+				fillLong(fieldName, (Long) value, consumer);
+			else if (value instanceof Double)
+				fillDouble(fieldName, (Double) value, consumer);
+			else if (value instanceof Float)
+				fillFloat(fieldName, (Float) value, consumer);
+			else
 				fill(fieldName, value, consumer);
 		});
 	}
@@ -130,16 +140,75 @@ abstract class FieldTypeAbstract implements FieldTypeInterface {
 				"Not supported type for the field: " + fieldName + ": " + value.getClass());
 	}
 
+	@Override
+	public void fillInt(final String fieldName, final int value, final FieldConsumer fieldConsumer) {
+		fillValue(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	public void fillLong(final String fieldName, final long value, final FieldConsumer fieldConsumer) {
+		fillValue(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	public void fillDouble(final String fieldName, final double value, final FieldConsumer fieldConsumer) {
+		fillValue(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	public void fillFloat(final String fieldName, final float value, final FieldConsumer fieldConsumer) {
+		fillValue(fieldName, value, fieldConsumer);
+	}
+
+	/**
+	 * @return true if the field name is the name of a wildcard field: the value must be a map
+	 */
+	private boolean isDynamic(final String fieldName) {
+		return fieldMapItem.matcher != null && fieldMapItem.name.equals(fieldName);
+	}
+
 	@Override
 	final public void dispatch(final String fieldName, final Object value, final FieldConsumer fieldConsumer) {
 		if (value == null)
 			return;
-		if (fieldMapItem.matcher != null && fieldMapItem.name.equals(fieldName))
+		if (isDynamic(fieldName))
 			fillDynamic(value, fieldConsumer);
 		else
 			fill(fieldName, value, fieldConsumer);
 	}
 
+	@Override
+	final public void dispatchInt(final String fieldName, final int value, final FieldConsumer fieldConsumer) {
+		if (isDynamic(fieldName))
+			fillDynamic(value, fieldConsumer);
+		else
+			fillInt(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	final public void dispatchLong(final String fieldName, final long value, final FieldConsumer fieldConsumer) {
+		if (isDynamic(fieldName))
+			fillDynamic(value, fieldConsumer);
+		else
+			fillLong(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	final public void dispatchDouble(final String fieldName, final double value, final FieldConsumer fieldConsumer) {
+		if (isDynamic(fieldName))
+			fillDynamic(value, fieldConsumer);
+		else
+			fillDouble(fieldName, value, fieldConsumer);
+	}
+
+	@Override
+	final public void dispatchFloat(final String fieldName, final float value, final FieldConsumer fieldConsumer) {
+		if (isDynamic(fieldName))
+			fillDynamic(value, fieldConsumer);
+		else
+			fillFloat(fieldName, value, fieldConsumer);
+	}
+
 	@Override
 	public ValueConverter getConverter(final String fieldName, final IndexReader reader) throws IOException {
 		return ValueConverter.newConverter(fieldName, fieldMapItem.definition, reader);
@@ -29,6 +29,28 @@ public interface FieldTypeInterface {
 
 	void dispatch(final String fieldName, final Object value, final FieldConsumer fieldConsumer);
 
+	/**
+	 * Primitive versions of dispatch: the numeric types index the value without boxing it.
+	 */
+	void fillInt(final String fieldName, final int value, final FieldConsumer fieldConsumer);
+
+	void fillLong(final String fieldName, final long value, final FieldConsumer fieldConsumer);
+
+	void fillDouble(final String fieldName, final double value, final FieldConsumer fieldConsumer);
+
+	void fillFloat(final String fieldName, final float value, final FieldConsumer fieldConsumer);
+
+	/**
+	 * Same rules as {@link #dispatch(String, Object, FieldConsumer)} for the primitive values of the records.
+	 */
+	void dispatchInt(final String fieldName, final int value, final FieldConsumer fieldConsumer);
+
+	void dispatchLong(final String fieldName, final long value, final FieldConsumer fieldConsumer);
+
+	void dispatchDouble(final String fieldName, final double value, final FieldConsumer fieldConsumer);
+
+	void dispatchFloat(final String fieldName, final float value, final FieldConsumer fieldConsumer);
+
 	default SortField getSortField(final String fieldName, final QueryDefinition.SortEnum sortEnum) {
 		return null;
 	}
@@ -37,10 +37,14 @@ class FloatDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new FloatDocValuesField(fieldName, ((Number) value).floatValue()));
-		else
-			consumer.accept(fieldName, new FloatDocValuesField(fieldName, Float.parseFloat(value.toString())));
+		fillFloat(fieldName,
+				value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillFloat(final String fieldName, final float value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new FloatDocValuesField(fieldName, value));
 	}
 
 	@Override
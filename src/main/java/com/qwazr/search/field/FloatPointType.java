@@ -30,10 +30,16 @@ class FloatPointType extends StorableFieldType {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		float floatValue = value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString());
-		consumer.accept(fieldName, new DoublePoint(fieldName, floatValue));
+		fillFloat(fieldName,
+				value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillFloat(final String fieldName, final float value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new DoublePoint(fieldName, value));
 		if (store == Field.Store.YES)
-			consumer.accept(fieldName, new StoredField(fieldName, floatValue));
+			consumer.accept(fieldName, new StoredField(fieldName, value));
 	}
 
 }
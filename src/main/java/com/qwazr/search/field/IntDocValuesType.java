@@ -37,10 +37,13 @@ class IntDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new NumericDocValuesField(fieldName, ((Number) value).intValue()));
-		else
-			consumer.accept(fieldName, new NumericDocValuesField(fieldName, Integer.parseInt(value.toString())));
+		fillInt(fieldName, value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillInt(final String fieldName, final int value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new NumericDocValuesField(fieldName, value));
 	}
 
 	@Override
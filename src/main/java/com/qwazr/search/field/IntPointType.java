@@ -30,10 +30,15 @@ class IntPointType extends StorableFieldType {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		int intValue = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
-		consumer.accept(fieldName, new IntPoint(fieldName, intValue));
+		fillInt(fieldName, value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillInt(final String fieldName, final int value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new IntPoint(fieldName, value));
 		if (store == Field.Store.YES)
-			consumer.accept(fieldName, new StoredField(fieldName, intValue));
+			consumer.accept(fieldName, new StoredField(fieldName, value));
 	}
 
 }
@@ -37,10 +37,13 @@ class LongDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new NumericDocValuesField(fieldName, ((Number) value).longValue()));
-		else
-			consumer.accept(fieldName, new NumericDocValuesField(fieldName, Long.parseLong(value.toString())));
+		fillLong(fieldName, value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillLong(final String fieldName, final long value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new NumericDocValuesField(fieldName, value));
 	}
 
 	@Override
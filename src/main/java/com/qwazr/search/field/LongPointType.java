@@ -32,10 +32,15 @@ class LongPointType extends StorableFieldType {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		long longValue = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
-		consumer.accept(fieldName, new LongPoint(fieldName, longValue));
+		fillLong(fieldName, value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillLong(final String fieldName, final long value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new LongPoint(fieldName, value));
 		if (store == Field.Store.YES)
-			consumer.accept(fieldName, new StoredField(fieldName, longValue));
+			consumer.accept(fieldName, new StoredField(fieldName, value));
 	}
 
 	@Override
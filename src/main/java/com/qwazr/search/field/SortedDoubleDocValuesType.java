@@ -39,13 +39,15 @@ class SortedDoubleDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
-					NumericUtils.doubleToSortableLong(((Number) value).doubleValue())));
-		else
-			consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
-					NumericUtils.doubleToSortableLong(Double.parseDouble(value.toString()))));
+		fillDouble(fieldName,
+				value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()),
+				consumer);
+	}
 
+	@Override
+	final public void fillDouble(final String fieldName, final double value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
+				NumericUtils.doubleToSortableLong(value)));
 	}
 
 	@Override
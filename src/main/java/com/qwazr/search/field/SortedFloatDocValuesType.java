@@ -39,12 +39,15 @@ class SortedFloatDocValuesType extends FieldTypeAbstract {
 
 	@Override
 	final public void fillValue(final String fieldName, final Object value, final FieldConsumer consumer) {
-		if (value instanceof Number)
-			consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
-					NumericUtils.floatToSortableInt(((Number) value).floatValue())));
-		else
-			consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
-					NumericUtils.floatToSortableInt(Float.parseFloat(value.toString()))));
+		fillFloat(fieldName,
+				value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString()),
+				consumer);
+	}
+
+	@Override
+	final public void fillFloat(final String fieldName, final float value, final FieldConsumer consumer) {
+		consumer.accept(fieldName, new SortedNumericDocValuesField(fieldName,
+				NumericUtils.floatToSortableInt(value)));
 	}
 
 	@Override
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.server.ServerException;
+
+import javax.ws.rs.core.Response;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control of the requests of an index. Each class of request has its own queue: a burst of searches
+ * does not delay the writes nor the administrative requests. A request waiting longer than the queue time
+ * budget, or arriving when the queue is full, is rejected immediately.
+ * When the index limits the concurrency of a request class, this limit replaces the schema-wide semaphores
+ * (max_simultaneous_read/write) for that class: a request admitted by the index never waits a second time.
+ * Otherwise, the schema-wide semaphore is acquired once the request is admitted, within what remains of the
+ * queue time budget.
+ */
+class AdmissionControl {
+
+	enum RequestClass {
+		search, write, admin
+	}
+
+	final static long[] WAIT_TIME_BOUNDS_MS = { 1, 10, 100, 1000, 10000 };
+
+	private final String indexName;
+	private final SchemaInstance schema;
+	private final EnumMap<RequestClass, Queue> queues;
+
+	AdmissionControl(final String indexName, final SchemaInstance schema, final IndexSettingsDefinition settings) {
+		this.indexName = indexName;
+		this.schema = schema;
+		this.queues = new EnumMap<>(RequestClass.class);
+		final Integer maxQueued = settings == null ? null : settings.maxQueuedRequests;
+		final Long maxQueueTimeMs = settings == null ? null : settings.maxQueueTimeMs;
+		queues.put(RequestClass.search,
+				new Queue(settings == null ? null : settings.maxConcurrentSearches, maxQueued, maxQueueTimeMs));
+		queues.put(RequestClass.write,
+				new Queue(settings == null ? null : settings.maxConcurrentWrites, maxQueued, maxQueueTimeMs));
+		queues.put(RequestClass.admin, new Queue(null, null, null));
+	}
+
+	/**
+	 * Wait for a slot in the queue of the request class. If the index does not limit this class, acquire the
+	 * semaphore of the schema. Both waits share the same queue time budget.
+	 *
+	 * @param requestClass the class of the request
+	 * @return the permit to release once the request is done
+	 * @throws ServerException (SERVICE_UNAVAILABLE) if the queue is full or the queue time budget is exceeded
+	 */
+	Permit acquire(final RequestClass requestClass) {
+		final Queue queue = queues.get(requestClass);
+		final long start = System.nanoTime();
+		queue.enter(requestClass);
+		if (queue.permits != null)
+			return new Permit(queue, null);
+		try {
+			final long timeoutNs = queue.getRemainingTimeNs(start);
+			return new Permit(queue, requestClass == RequestClass.write ?
+					schema.acquireWriteSemaphore(timeoutNs) :
+					schema.acquireReadSemaphore(timeoutNs));
+		} catch (TimeoutException e) {
+			queue.leave();
+			throw queue.reject(requestClass, "the queue time budget is exceeded");
+		} catch (RuntimeException e) {
+			queue.leave();
+			throw e;
+		}
+	}
+
+	Map<String, IndexStatus.AdmissionStatus> getStatus() {
+		final Map<String, IndexStatus.AdmissionStatus> status = new LinkedHashMap<>();
+		queues.forEach((requestClass, queue) -> status.put(requestClass.name(), queue.getStatus()));
+		return status;
+	}
+
+	static final class Permit {
+
+		private final Queue queue;
+		private final Semaphore schemaSemaphore;
+
+		private Permit(final Queue queue, final Semaphore schemaSemaphore) {
+			this.queue = queue;
+			this.schemaSemaphore = schemaSemaphore;
+		}
+
+		void release() {
+			if (schemaSemaphore != null)
+				schemaSemaphore.release();
+			queue.leave();
+		}
+	}
+
+	private final class Queue {
+
+		private final Integer maxConcurrent;
+		private final Semaphore permits;
+		private final int maxQueued;
+		private final long maxQueueTimeMs;
+		private final AtomicInteger active;
+		private final AtomicInteger queued;
+		private final LongAdder admitted;
+		private final LongAdder rejected;
+		private final LongAdder[] waitTimes;
+
+		private Queue(final Integer maxConcurrent, final Integer maxQueued, final Long maxQueueTimeMs) {
+			this.maxConcurrent = maxConcurrent;
+			this.permits = maxConcurrent == null ? null : new Semaphore(maxConcurrent, true);
+			this.maxQueued = maxQueued == null ? Integer.MAX_VALUE : maxQueued;
+			this.maxQueueTimeMs = maxQueueTimeMs == null ? 0 : maxQueueTimeMs;
+			this.active = new AtomicInteger();
+			this.queued = new AtomicInteger();
+			this.admitted = new LongAdder();
+			this.rejected = new LongAdder();
+			this.waitTimes = new LongAdder[WAIT_TIME_BOUNDS_MS.length + 1];
+			for (int i = 0; i < waitTimes.length; i++)
+				waitTimes[i] = new LongAdder();
+		}
+
+		private void enter(final RequestClass requestClass) {
+			if (permits == null || permits.tryAcquire()) {
+				admit(0);
+				return;
+			}
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				throw reject(requestClass, "the queue is full");
+			}
+			final long start = System.nanoTime();
+			final boolean acquired;
+			try {
+				if (maxQueueTimeMs > 0)
+					acquired = permits.tryAcquire(maxQueueTimeMs, TimeUnit.MILLISECONDS);
+				else {
+					permits.acquire();
+					acquired = true;
+				}
+			} catch (InterruptedException e) {
+				throw new ServerException(e);
+			} finally {
+				queued.decrementAndGet();
+			}
+			if (!acquired)
+				throw reject(requestClass, "the queue time budget is exceeded");
+			admit(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+
+		/**
+		 * @param start the time the request arrived, in nanoseconds
+		 * @return what remains of the queue time budget (at least zero), or -1 if the wait is not limited
+		 */
+		private long getRemainingTimeNs(final long start) {
+			if (maxQueueTimeMs <= 0)
+				return -1;
+			return Math.max(0, TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMs) - (System.nanoTime() - start));
+		}
+
+		private void admit(final long waitTimeMs) {
+			active.incrementAndGet();
+			admitted.increment();
+			int bucket = 0;
+			while (bucket < WAIT_TIME_BOUNDS_MS.length && waitTimeMs >= WAIT_TIME_BOUNDS_MS[bucket])
+				bucket++;
+			waitTimes[bucket].increment();
+		}
+
+		private ServerException reject(final RequestClass requestClass, final String reason) {
+			rejected.increment();
+			return new ServerException(Response.Status.SERVICE_UNAVAILABLE,
+					"Too many " + requestClass.name() + " requests, " + reason + " - Index: " + indexName);
+		}
+
+		private void leave() {
+			active.decrementAndGet();
+			if (permits != null)
+				permits.release();
+		}
+
+		private IndexStatus.AdmissionStatus getStatus() {
+			final LinkedHashMap<String, Long> waitTimeMs = new LinkedHashMap<>();
+			for (int i = 0; i < waitTimes.length; i++)
+				waitTimeMs.put(i < WAIT_TIME_BOUNDS_MS.length ?
+						"<" + WAIT_TIME_BOUNDS_MS[i] :
+						">=" + WAIT_TIME_BOUNDS_MS[WAIT_TIME_BOUNDS_MS.length - 1], waitTimes[i].sum());
+			return new IndexStatus.AdmissionStatus(maxConcurrent, active.get(), queued.get(), admitted.sum(),
+					rejected.sum(), waitTimeMs);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.utils.IOUtils;
+import com.qwazr.utils.json.JsonMapper;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Offline bulk build: the documents of a stream are written by several private IndexWriters in temporary
+ * directories, without refresh nor commit. The resulting segments are then added to the index in one pass.
+ * The documents with the same ID are routed to the same writer, the last one wins.
+ * Each build has its own threads, one per writer: a writer never waits for a thread used by another build.
+ */
+class BulkBuilder implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkBuilder.class);
+
+	private final static int BATCH_SIZE = 1000;
+	private final static int QUEUED_BATCHES = 2;
+
+	private final String indexName;
+	private final File bulkDirectory;
+	private final Function<IndexWriter, Consumer<Map<String, Object>>> posterFactory;
+	private final List<Directory> directories;
+	private final List<IndexWriter> writers;
+	private final List<BlockingQueue<Batch>> queues;
+	private final ExecutorService executorService;
+
+	/**
+	 * @param indexName     the name of the index
+	 * @param bulkDirectory the parent of the temporary directories
+	 * @param config        the configuration of the index writer, the temporary writers use the same codec,
+	 *                      analyzer, similarity and index sort
+	 * @param threads       the number of parallel writers
+	 * @param posterFactory builds the poster writing the documents to a temporary writer
+	 * @throws IOException if a temporary writer cannot be created
+	 */
+	BulkBuilder(final String indexName, final File bulkDirectory, final LiveIndexWriterConfig config,
+			final int threads, final Function<IndexWriter, Consumer<Map<String, Object>>> posterFactory)
+			throws IOException {
+		this.indexName = indexName;
+		this.bulkDirectory = bulkDirectory;
+		this.posterFactory = posterFactory;
+		final int writerCount = Math.max(1, threads);
+		this.directories = new ArrayList<>(writerCount);
+		this.writers = new ArrayList<>(writerCount);
+		this.queues = new ArrayList<>(writerCount);
+		if (bulkDirectory.exists())
+			FileUtils.deleteDirectory(bulkDirectory);
+		try {
+			for (int i = 0; i < writerCount; i++) {
+				final Directory directory = FSDirectory.open(new File(bulkDirectory, Integer.toString(i)).toPath());
+				directories.add(directory);
+				writers.add(new IndexWriter(directory, getWriterConfig(config)));
+				queues.add(new ArrayBlockingQueue<>(QUEUED_BATCHES));
+			}
+		} catch (IOException | RuntimeException e) {
+			closeWriters();
+			throw e;
+		}
+		final AtomicInteger threadCounter = new AtomicInteger();
+		this.executorService = Executors.newFixedThreadPool(writerCount,
+				runnable -> new Thread(runnable, "qwazr-bulk-" + indexName + '-' + threadCounter.incrementAndGet()));
+	}
+
+	private static IndexWriterConfig getWriterConfig(final LiveIndexWriterConfig config) {
+		final IndexWriterConfig writerConfig = new IndexWriterConfig(config.getAnalyzer());
+		writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+		writerConfig.setSimilarity(config.getSimilarity());
+		writerConfig.setCodec(config.getCodec());
+		writerConfig.setRAMBufferSizeMB(config.getRAMBufferSizeMB());
+		if (config.getIndexSort() != null)
+			writerConfig.setIndexSort(config.getIndexSort());
+		writerConfig.setCommitOnClose(true);
+		return writerConfig;
+	}
+
+	private final static class Batch {
+
+		private final List<Map<String, Object>> documents;
+		private final int[] lineNumbers;
+
+		private Batch() {
+			documents = new ArrayList<>(BATCH_SIZE);
+			lineNumbers = new int[BATCH_SIZE];
+		}
+
+		private boolean add(final Map<String, Object> document, final int lineNumber) {
+			lineNumbers[documents.size()] = lineNumber;
+			documents.add(document);
+			return documents.size() == BATCH_SIZE;
+		}
+	}
+
+	private final static Batch END = new Batch();
+
+	/**
+	 * Parse the stream in the calling thread, the documents are written by one thread per writer
+	 *
+	 * @param inputStream one JSON document per line
+	 * @param status      collects the count and the errors
+	 * @throws IOException          if the stream cannot be read or a writer failed
+	 * @throws InterruptedException if the build was interrupted
+	 */
+	void build(final InputStream inputStream, final PostStreamStatus.Builder status)
+			throws IOException, InterruptedException {
+		final List<Future<Integer>> futures = new ArrayList<>(writers.size());
+		for (int i = 0; i < writers.size(); i++) {
+			final IndexWriter writer = writers.get(i);
+			final BlockingQueue<Batch> queue = queues.get(i);
+			futures.add(executorService.submit(() -> write(writer, queue, status)));
+		}
+		try {
+			read(inputStream, status, futures);
+		} finally {
+			for (int i = 0; i < queues.size(); i++) {
+				// A failed writer no longer consumes its queue
+				while (!futures.get(i).isDone() && !queues.get(i).offer(END, 1, TimeUnit.SECONDS))
+					LOGGER.debug("Waiting for a bulk writer - Index: " + indexName);
+			}
+		}
+		int count = 0;
+		for (Future<Integer> future : futures) {
+			try {
+				count += future.get();
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IOException(cause);
+			}
+		}
+		status.count(count);
+		for (IndexWriter writer : writers)
+			writer.close();
+	}
+
+	private void read(final InputStream inputStream, final PostStreamStatus.Builder status,
+			final List<Future<Integer>> futures) throws IOException, InterruptedException {
+		final ObjectReader objectReader = JsonMapper.MAPPER.readerFor(IndexServiceInterface.MapStringObjectTypeRef);
+		final Batch[] batches = new Batch[writers.size()];
+		int nextWriter = 0;
+		try (final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				synchronized (status) {
+					status.line();
+				}
+				if (line.trim().isEmpty())
+					continue;
+				final Map<String, Object> document;
+				try {
+					document = objectReader.readValue(line);
+				} catch (JsonProcessingException e) {
+					synchronized (status) {
+						status.error(lineNumber, e);
+					}
+					continue;
+				}
+				if (document == null || document.isEmpty())
+					continue;
+				final Object id = document.get(FieldDefinition.ID_FIELD);
+				final int writer;
+				if (id == null) {
+					writer = nextWriter;
+					nextWriter = (nextWriter + 1) % batches.length;
+				} else
+					writer = (id.toString().hashCode() & Integer.MAX_VALUE) % batches.length;
+				if (batches[writer] == null)
+					batches[writer] = new Batch();
+				if (batches[writer].add(document, lineNumber)) {
+					enqueue(writer, batches[writer], futures);
+					batches[writer] = null;
+				}
+			}
+		}
+		for (int i = 0; i < batches.length; i++)
+			if (batches[i] != null)
+				enqueue(i, batches[i], futures);
+	}
+
+	private void enqueue(final int writer, final Batch batch, final List<Future<Integer>> futures)
+			throws IOException, InterruptedException {
+		while (!queues.get(writer).offer(batch, 1, TimeUnit.SECONDS))
+			if (futures.get(writer).isDone())
+				throw new IOException("A bulk writer failed - Index: " + indexName);
+	}
+
+	private int write(final IndexWriter writer, final BlockingQueue<Batch> queue,
+			final PostStreamStatus.Builder status) throws InterruptedException {
+		final Consumer<Map<String, Object>> poster = posterFactory.apply(writer);
+		int count = 0;
+		for (; ; ) {
+			final Batch batch = queue.take();
+			if (batch == END)
+				return count;
+			int i = 0;
+			for (Map<String, Object> document : batch.documents) {
+				try {
+					poster.accept(document);
+					count++;
+				} catch (RuntimeException e) {
+					if (!writer.isOpen())
+						throw e;
+					synchronized (status) {
+						status.error(batch.lineNumbers[i], e);
+					}
+				}
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * @return the directories of the temporary indexes, to be added once the build is done
+	 */
+	Directory[] getDirectories() {
+		return directories.toArray(new Directory[directories.size()]);
+	}
+
+	@Override
+	public void close() {
+		executorService.shutdownNow();
+		try {
+			if (!executorService.awaitTermination(1, TimeUnit.MINUTES))
+				LOGGER.warn("The bulk writers are still running - Index: " + indexName);
+		} catch (InterruptedException e) {
+			LOGGER.warn("Interrupted while waiting for the bulk writers - Index: " + indexName, e);
+			Thread.currentThread().interrupt();
+		}
+		closeWriters();
+	}
+
+	private void closeWriters() {
+		for (IndexWriter writer : writers) {
+			if (!writer.isOpen())
+				continue;
+			try {
+				writer.rollback();
+			} catch (IOException e) {
+				LOGGER.warn("Cannot rollback a bulk writer - Index: " + indexName, e);
+			}
+		}
+		for (Directory directory : directories)
+			IOUtils.closeQuietly(directory);
+		FileUtils.deleteQuietly(bulkDirectory);
+	}
+}
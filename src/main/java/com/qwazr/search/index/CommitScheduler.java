@@ -0,0 +1,235 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.index.IndexWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Group commit: the writes only register themselves, a single background thread commits them together
+ * when the commit policy of the index (interval, pending documents, pending bytes) is reached.
+ * If the thread stops (interruption or error), a new one is started by the next write.
+ */
+class CommitScheduler implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommitScheduler.class);
+
+	interface Committer {
+		void commit() throws IOException;
+	}
+
+	private final String indexName;
+	private final IndexWriter indexWriter;
+	private final Committer committer;
+	private final long intervalMs;
+	private final int maxPendingDocs;
+	private final long maxPendingBytes;
+	private Thread thread;
+
+	private long writeGeneration;
+	private long committedGeneration;
+	private long waitedGeneration;
+	private long firstPendingTime;
+	private int pendingDocs;
+	private IOException lastError;
+	private long lastErrorGeneration;
+	private boolean closed;
+	private boolean stopped;
+
+	private CommitScheduler(final String indexName, final IndexSettingsDefinition settings,
+			final IndexWriter indexWriter, final Committer committer) {
+		this.indexName = indexName;
+		this.indexWriter = indexWriter;
+		this.committer = committer;
+		this.intervalMs = settings.commitIntervalMs == null ?
+				IndexSettingsDefinition.DEFAULT_COMMIT_INTERVAL_MS :
+				settings.commitIntervalMs;
+		this.maxPendingDocs = settings.commitMaxPendingDocs == null ? Integer.MAX_VALUE : settings.commitMaxPendingDocs;
+		this.maxPendingBytes =
+				settings.commitMaxPendingBytes == null ? Long.MAX_VALUE : settings.commitMaxPendingBytes;
+		this.writeGeneration = 0;
+		this.committedGeneration = 0;
+		this.waitedGeneration = 0;
+		this.pendingDocs = 0;
+		this.lastError = null;
+		this.lastErrorGeneration = 0;
+		this.closed = false;
+		startThread();
+	}
+
+	private synchronized void startThread() {
+		stopped = false;
+		thread = new Thread(this::run, "qwazr-commit-" + indexName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Check that the writes can be registered, before they are applied to the IndexWriter
+	 *
+	 * @throws IOException if the scheduler is closed
+	 */
+	synchronized void beforeWrite() throws IOException {
+		if (closed)
+			throw new IOException("The commit scheduler is closed - Index: " + indexName);
+		if (stopped)
+			startThread();
+	}
+
+	/**
+	 * Interrupt the commit thread. Used by the tests to check the restart of the thread.
+	 *
+	 * @return the interrupted thread
+	 */
+	synchronized Thread interruptThread() {
+		thread.interrupt();
+		return thread;
+	}
+
+	/**
+	 * @param indexName   the name of the index
+	 * @param settings    the settings of the index
+	 * @param indexWriter the writer of the index
+	 * @param committer   the commit procedure
+	 * @return a new scheduler, or null if no commit policy is defined (each write commits synchronously)
+	 */
+	static CommitScheduler of(final String indexName, final IndexSettingsDefinition settings,
+			final IndexWriter indexWriter, final Committer committer) {
+		if (settings == null || indexWriter == null)
+			return null;
+		if (settings.commitIntervalMs == null && settings.commitMaxPendingDocs == null &&
+				settings.commitMaxPendingBytes == null)
+			return null;
+		return new CommitScheduler(indexName, settings, indexWriter, committer);
+	}
+
+	/**
+	 * Register a write which has been applied to the IndexWriter.
+	 *
+	 * @param docs          the number of documents written
+	 * @param waitForCommit if true, wait until a commit including this write is done
+	 * @throws IOException          if the commit including this write failed, or if the scheduler is closed
+	 * @throws InterruptedException if the wait was interrupted
+	 */
+	void afterWrite(final int docs, final boolean waitForCommit) throws IOException, InterruptedException {
+		final boolean overBytes = indexWriter.ramBytesUsed() >= maxPendingBytes;
+		synchronized (this) {
+			if (closed)
+				throw new IOException("The commit scheduler is closed - Index: " + indexName);
+			if (stopped)
+				startThread();
+			if (writeGeneration == committedGeneration)
+				firstPendingTime = System.currentTimeMillis();
+			final long generation = ++writeGeneration;
+			pendingDocs += docs;
+			if (waitForCommit && generation > waitedGeneration)
+				waitedGeneration = generation;
+			if (waitForCommit || overBytes || pendingDocs >= maxPendingDocs)
+				notifyAll();
+			if (!waitForCommit)
+				return;
+			while (committedGeneration < generation) {
+				if (stopped)
+					startThread();
+				wait();
+			}
+			if (lastError != null && lastErrorGeneration >= generation)
+				throw lastError;
+		}
+	}
+
+	private boolean isCommitRequired() {
+		return closed || waitedGeneration > committedGeneration || pendingDocs >= maxPendingDocs ||
+				indexWriter.ramBytesUsed() >= maxPendingBytes;
+	}
+
+	private void run() {
+		try {
+			commitLoop();
+		} finally {
+			synchronized (this) {
+				stopped = true;
+				notifyAll();
+			}
+		}
+	}
+
+	private void commitLoop() {
+		for (; ; ) {
+			final long generation;
+			try {
+				synchronized (this) {
+					while (!closed && writeGeneration == committedGeneration)
+						wait();
+					if (writeGeneration == committedGeneration)
+						return;
+					long remaining;
+					while (!isCommitRequired() &&
+							(remaining = firstPendingTime + intervalMs - System.currentTimeMillis()) > 0)
+						wait(remaining);
+					generation = writeGeneration;
+					pendingDocs = 0;
+				}
+			} catch (InterruptedException e) {
+				LOGGER.warn("Commit scheduler interrupted - Index: " + indexName);
+				return;
+			}
+			IOException error = null;
+			try {
+				committer.commit();
+			} catch (IOException e) {
+				LOGGER.error("Group commit failed - Index: " + indexName, e);
+				error = e;
+			} catch (RuntimeException e) {
+				LOGGER.error("Group commit failed - Index: " + indexName, e);
+				error = new IOException(e);
+			}
+			synchronized (this) {
+				committedGeneration = generation;
+				if (error != null) {
+					lastError = error;
+					lastErrorGeneration = generation;
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Commit the pending writes and stop the background thread
+	 */
+	@Override
+	public void close() {
+		final Thread lastThread;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			notifyAll();
+			lastThread = thread;
+		}
+		try {
+			lastThread.join();
+		} catch (InterruptedException e) {
+			LOGGER.warn("Interrupted while waiting for the last commit - Index: " + indexName);
+			Thread.currentThread().interrupt();
+		}
+	}
+}
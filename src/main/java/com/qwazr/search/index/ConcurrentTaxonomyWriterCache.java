@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.facet.taxonomy.writercache.Cl2oTaxonomyWriterCache;
+import org.apache.lucene.facet.taxonomy.writercache.LruTaxonomyWriterCache;
+import org.apache.lucene.facet.taxonomy.writercache.TaxonomyWriterCache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The cache of the taxonomy writer, with an optional lock-free front cache of the label to ordinal mapping.
+ * The front cache is read-mostly: it admits new labels until its maximum size is reached.
+ * The ordinals of a taxonomy never change, the entries stay valid until the taxonomy is cleared.
+ */
+class ConcurrentTaxonomyWriterCache implements TaxonomyWriterCache {
+
+	final static int DEFAULT_LRU_SIZE = 4096;
+	final static int DEFAULT_CL2O_INITIAL_CAPACITY = 1024;
+
+	private final TaxonomyWriterCache cache;
+	private final ConcurrentHashMap<FacetLabel, Integer> frontCache;
+	private final int frontCacheSize;
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	private ConcurrentTaxonomyWriterCache(final TaxonomyWriterCache cache, final int frontCacheSize) {
+		this.cache = cache;
+		this.frontCacheSize = frontCacheSize;
+		this.frontCache = frontCacheSize > 0 ? new ConcurrentHashMap<>() : null;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * @param settings the settings of the index
+	 * @return the cache defined by the taxonomy_writer_cache settings
+	 */
+	static ConcurrentTaxonomyWriterCache of(final IndexSettingsDefinition settings) {
+		final IndexSettingsDefinition.TaxonomyWriterCache type = settings == null ? null : settings.taxonomyWriterCache;
+		final Integer size = settings == null ? null : settings.taxonomyWriterCacheSize;
+		final TaxonomyWriterCache cache;
+		if (type == null)
+			cache = DirectoryTaxonomyWriter.defaultTaxonomyWriterCache();
+		else {
+			switch (type) {
+			case LruTaxonomyWriterCache:
+				cache = new LruTaxonomyWriterCache(size == null ? DEFAULT_LRU_SIZE : size);
+				break;
+			case Cl2oTaxonomyWriterCache:
+				cache = new Cl2oTaxonomyWriterCache(size == null ? DEFAULT_CL2O_INITIAL_CAPACITY : size, 0.15f, 3);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported taxonomy writer cache: " + type);
+			}
+		}
+		return new ConcurrentTaxonomyWriterCache(cache,
+				settings == null || settings.taxonomyFrontCacheSize == null ? 0 : settings.taxonomyFrontCacheSize);
+	}
+
+	private void cacheFront(final FacetLabel categoryPath, final int ordinal) {
+		if (frontCache != null && frontCache.size() < frontCacheSize)
+			frontCache.putIfAbsent(categoryPath, ordinal);
+	}
+
+	@Override
+	public int get(final FacetLabel categoryPath) {
+		if (frontCache != null) {
+			final Integer ordinal = frontCache.get(categoryPath);
+			if (ordinal != null) {
+				hits.increment();
+				return ordinal;
+			}
+		}
+		final int ordinal = cache.get(categoryPath);
+		if (ordinal < 0) {
+			misses.increment();
+			return ordinal;
+		}
+		hits.increment();
+		cacheFront(categoryPath, ordinal);
+		return ordinal;
+	}
+
+	@Override
+	public boolean put(final FacetLabel categoryPath, final int ordinal) {
+		final boolean evicted = cache.put(categoryPath, ordinal);
+		cacheFront(categoryPath, ordinal);
+		return evicted;
+	}
+
+	@Override
+	public boolean isFull() {
+		return cache.isFull();
+	}
+
+	/**
+	 * @return the number of entries of the front cache
+	 */
+	public int size() {
+		return frontCache == null ? 0 : frontCache.size();
+	}
+
+	@Override
+	public void clear() {
+		if (frontCache != null)
+			frontCache.clear();
+		cache.clear();
+	}
+
+	@Override
+	public void close() {
+		if (frontCache != null)
+			frontCache.clear();
+		cache.close();
+	}
+
+	IndexStatus.TaxonomyCacheStatus getStatus() {
+		return new IndexStatus.TaxonomyCacheStatus(cache.getClass().getTypeName(), frontCacheSize, size(), hits.sum(),
+				misses.sum());
+	}
+}
@@ -19,45 +19,97 @@ import com.qwazr.search.field.FieldDefinition;
 import com.qwazr.search.field.FieldTypeInterface;
 import com.qwazr.utils.WildcardMatcher;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FieldMap {
 
+	private final static int MAX_FACETS_CONFIGS = 1000;
+
+	private final static int MAX_RESOLVED_NAMES = 10000;
+
+	private final static FacetsConfig NO_FACETS_CONFIG = new FacetsConfig();
+
 	private final LinkedHashMap<String, FieldDefinition> fieldDefinitionMap;
 	private final HashMap<String, Item> nameDefMap;
-	private final HashMap<WildcardMatcher, Item> wildcardMap;
+	private final Item[] wildcardItems;
+	private final CharacterRunAutomaton[] wildcardAutomata;
+	private final CharacterRunAutomaton wildcardUnion;
+	private final ConcurrentHashMap<String, Item> resolvedMap;
+	private final ConcurrentHashMap<Set<String>, FacetsConfig> facetsConfigMap;
 
 	FieldMap(final LinkedHashMap<String, FieldDefinition> fieldDefinitionMap) {
 
 		nameDefMap = new HashMap<>();
-		wildcardMap = new HashMap<>();
+		resolvedMap = new ConcurrentHashMap<>();
+		facetsConfigMap = new ConcurrentHashMap<>();
 
+		final List<Item> items = new ArrayList<>();
+		final List<Automaton> automata = new ArrayList<>();
 		fieldDefinitionMap.forEach((name, definition) -> {
 			if (name.indexOf('*') != -1 || name.indexOf('?') != -1) {
-				final WildcardMatcher wildcardMatcher = new WildcardMatcher(name);
-				wildcardMap.put(wildcardMatcher, new Item(name, definition, wildcardMatcher));
+				items.add(new Item(name, definition, new WildcardMatcher(name)));
+				automata.add(WildcardQuery.toAutomaton(new Term(name, name)));
 			} else
 				nameDefMap.put(name, new Item(name, definition, null));
 		});
 
+		wildcardItems = items.toArray(new Item[items.size()]);
+		wildcardAutomata = new CharacterRunAutomaton[automata.size()];
+		for (int i = 0; i < wildcardAutomata.length; i++)
+			wildcardAutomata[i] = new CharacterRunAutomaton(automata.get(i));
+		wildcardUnion = buildUnion(automata);
+
 		this.fieldDefinitionMap = fieldDefinitionMap;
 	}
 
+	/**
+	 * One automaton matching any of the wildcard patterns, used to reject unknown field names
+	 *
+	 * @param automata the automaton of each pattern
+	 * @return the union automaton, or null if there is less than two patterns or if the union is too complex
+	 */
+	private static CharacterRunAutomaton buildUnion(final List<Automaton> automata) {
+		if (automata.size() < 2)
+			return null;
+		try {
+			return new CharacterRunAutomaton(Operations.union(automata));
+		} catch (TooComplexToDeterminizeException e) {
+			return null;
+		}
+	}
+
 	final Item find(final String fieldName) {
 		if (fieldName == null || fieldName.isEmpty())
 			throw new IllegalArgumentException("Empty fieldname is not allowed");
-		final Item item = nameDefMap.get(fieldName);
+		Item item = nameDefMap.get(fieldName);
+		if (item != null)
+			return item;
+		item = resolvedMap.get(fieldName);
 		if (item != null)
 			return item;
-		for (Map.Entry<WildcardMatcher, Item> entry : wildcardMap.entrySet())
-			if (entry.getKey().match(fieldName))
-				return entry.getValue();
+		if (wildcardUnion == null || wildcardUnion.run(fieldName)) {
+			for (int i = 0; i < wildcardAutomata.length; i++) {
+				if (wildcardAutomata[i].run(fieldName)) {
+					item = wildcardItems[i];
+					if (resolvedMap.size() < MAX_RESOLVED_NAMES)
+						resolvedMap.put(fieldName, item);
+					return item;
+				}
+			}
+		}
 		throw new IllegalArgumentException("No field definition for the field: " + fieldName);
 	}
 
 	final public FieldTypeInterface getFieldType(final String fieldName) {
-		return FieldTypeInterface.getInstance(find(fieldName));
+		return find(fieldName).fieldType;
 	}
 
 	final LinkedHashMap<String, FieldDefinition> getFieldDefinitionMap() {
@@ -72,11 +124,20 @@ public class FieldMap {
 
 		public final WildcardMatcher matcher;
 
+		public final FieldTypeInterface fieldType;
+
+		private final boolean facetConfigured;
+
 		private Item(final String name, final FieldDefinition definition, final WildcardMatcher matcher) {
 			this.name = name;
 			this.definition = definition;
 			this.matcher = matcher;
-
+			this.facetConfigured = definition.template != null &&
+					(definition.template == FieldDefinition.Template.SortedSetDocValuesFacetField
+							|| definition.template == FieldDefinition.Template.FacetField
+							|| definition.facet_multivalued != null || definition.facet_hierarchical != null
+							|| definition.facet_require_dim_count != null);
+			this.fieldType = FieldTypeInterface.getInstance(this);
 		}
 
 		final public boolean match(final String fieldName) {
@@ -110,6 +171,33 @@ public class FieldMap {
 		return facetsConfig;
 	}
 
+	/**
+	 * Return a shared FacetsConfig for the given document fields.
+	 * The FacetsConfig instances are memoized by the set of the fields having a facet configuration.
+	 *
+	 * @param concreteFieldNames the name of the fields of the document
+	 * @return a FacetsConfig which must not be modified
+	 */
+	final FacetsConfig getFacetsConfig(final Collection<String> concreteFieldNames) {
+		Set<String> signature = null;
+		for (String fieldName : concreteFieldNames) {
+			if (!find(fieldName).facetConfigured)
+				continue;
+			if (signature == null)
+				signature = new HashSet<>();
+			signature.add(fieldName);
+		}
+		if (signature == null)
+			return NO_FACETS_CONFIG;
+		FacetsConfig facetsConfig = facetsConfigMap.get(signature);
+		if (facetsConfig != null)
+			return facetsConfig;
+		facetsConfig = getNewFacetsConfig(signature);
+		if (facetsConfigMap.size() < MAX_FACETS_CONFIGS)
+			facetsConfigMap.putIfAbsent(signature, facetsConfig);
+		return facetsConfig;
+	}
+
 	final public FacetsConfig getNewFacetsConfig(final String fieldName) {
 		final FacetsConfig facetsConfig = new FacetsConfig();
 		setFacetConfig(fieldName, facetsConfig);
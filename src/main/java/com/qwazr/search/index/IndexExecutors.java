@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.StringUtils;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools of the indexes:
+ * <ul>
+ * <li>search: a work-stealing pool searching the segments in parallel (a search may wait for its own tasks)</li>
+ * <li>request: the pool of the server handling the requests</li>
+ * <li>maintenance: the background writing tasks (parallel posts), the bulk builds have their own threads</li>
+ * </ul>
+ * The sizes are read from the system properties or the environment variables QWAZR_SEARCH_THREADS,
+ * QWAZR_REQUEST_THREADS and QWAZR_MAINTENANCE_THREADS.
+ */
+public class IndexExecutors implements Closeable {
+
+	public final static String SEARCH_THREADS = "QWAZR_SEARCH_THREADS";
+	public final static String REQUEST_THREADS = "QWAZR_REQUEST_THREADS";
+	public final static String MAINTENANCE_THREADS = "QWAZR_MAINTENANCE_THREADS";
+
+	private final static long KEEP_ALIVE_SECONDS = 60;
+
+	private final ExecutorService searchExecutor;
+	private final ExecutorService requestExecutor;
+	private final ExecutorService maintenanceExecutor;
+	private final boolean shared;
+
+	/**
+	 * Use the same executor for every task. The executor is not shut down by {@link #close()}.
+	 *
+	 * @param executorService the executor
+	 */
+	public IndexExecutors(final ExecutorService executorService) {
+		this.searchExecutor = executorService;
+		this.requestExecutor = executorService;
+		this.maintenanceExecutor = executorService;
+		this.shared = true;
+	}
+
+	/**
+	 * @param searchThreads      the parallelism of the search pool
+	 * @param requestThreads     the maximum number of request threads, or 0 for an unbounded pool
+	 * @param maintenanceThreads the maximum number of maintenance threads
+	 */
+	public IndexExecutors(final int searchThreads, final int requestThreads, final int maintenanceThreads) {
+		this.searchExecutor = new ForkJoinPool(searchThreads, new SearchThreadFactory(), null, false);
+		this.requestExecutor = requestThreads <= 0 ?
+				new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+						new SynchronousQueue<>(), new NamedThreadFactory("qwazr-request-")) :
+				newBoundedPool(requestThreads, "qwazr-request-");
+		this.maintenanceExecutor = newBoundedPool(maintenanceThreads, "qwazr-maintenance-");
+		this.shared = false;
+	}
+
+	/**
+	 * @return new executors sized by the system properties or the environment variables
+	 */
+	public static IndexExecutors of() {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		return new IndexExecutors(getThreads(SEARCH_THREADS, processors), getThreads(REQUEST_THREADS, 0),
+				getThreads(MAINTENANCE_THREADS, processors));
+	}
+
+	private static int getThreads(final String name, final int defaultValue) {
+		String value = System.getProperty(name);
+		if (StringUtils.isEmpty(value))
+			value = System.getenv(name);
+		return StringUtils.isEmpty(value) ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	private static ThreadPoolExecutor newBoundedPool(final int threads, final String prefix) {
+		final ThreadPoolExecutor executor =
+				new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<>(), new NamedThreadFactory(prefix));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	ExecutorService getSearchExecutor() {
+		return searchExecutor;
+	}
+
+	public ExecutorService getRequestExecutor() {
+		return requestExecutor;
+	}
+
+	ExecutorService getMaintenanceExecutor() {
+		return maintenanceExecutor;
+	}
+
+	Map<String, IndexStatus.ExecutorStatus> getStatus() {
+		final Map<String, IndexStatus.ExecutorStatus> status = new LinkedHashMap<>();
+		putStatus(status, "search", searchExecutor);
+		putStatus(status, "request", requestExecutor);
+		putStatus(status, "maintenance", maintenanceExecutor);
+		return status;
+	}
+
+	private static void putStatus(final Map<String, IndexStatus.ExecutorStatus> status, final String name,
+			final ExecutorService executorService) {
+		if (executorService instanceof ThreadPoolExecutor)
+			status.put(name, new IndexStatus.ExecutorStatus((ThreadPoolExecutor) executorService));
+		else if (executorService instanceof ForkJoinPool)
+			status.put(name, new IndexStatus.ExecutorStatus((ForkJoinPool) executorService));
+	}
+
+	@Override
+	public void close() {
+		if (shared)
+			return;
+		searchExecutor.shutdown();
+		requestExecutor.shutdown();
+		maintenanceExecutor.shutdown();
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger counter;
+
+		private NamedThreadFactory(final String prefix) {
+			this.prefix = prefix;
+			this.counter = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			return new Thread(runnable, prefix + counter.incrementAndGet());
+		}
+	}
+
+	private static class SearchThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+			final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("qwazr-search-" + counter.incrementAndGet());
+			return thread;
+		}
+	}
+}
@@ -40,6 +40,8 @@ public class IndexFileSet {
 	final static String FIELDS_FILE = "fields.json";
 	final static String ANALYZERS_FILE = "analyzers.json";
 	final static String RESOURCES_DIR = "resources";
+	final static String TRANSLOG_DIR = "translog";
+	final static String BULK_DIR = "bulk";
 
 	final private File uuidFile;
 	final File uuidMasterFile;
@@ -49,6 +51,8 @@ public class IndexFileSet {
 	final File taxonomyDirectory;
 	final private File analyzerMapFile;
 	final File resourcesDirectory;
+	final File translogDirectory;
+	final File bulkDirectory;
 	final private File fieldMapFile;
 	final Path replWorkPath;
 
@@ -60,6 +64,8 @@ public class IndexFileSet {
 		this.taxonomyDirectory = new File(mainDirectory, INDEX_TAXONOMY);
 		this.analyzerMapFile = new File(mainDirectory, ANALYZERS_FILE);
 		this.resourcesDirectory = new File(mainDirectory, RESOURCES_DIR);
+		this.translogDirectory = new File(mainDirectory, TRANSLOG_DIR);
+		this.bulkDirectory = new File(mainDirectory, BULK_DIR);
 		this.fieldMapFile = new File(mainDirectory, FIELDS_FILE);
 		this.settingsFile = new File(mainDirectory, SETTINGS_FILE);
 		this.replWorkPath = mainDirectory.toPath().resolve(REPL_WORK);
@@ -15,6 +15,8 @@
  */
 package com.qwazr.search.index;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.qwazr.classloader.ClassLoaderManager;
 import com.qwazr.search.analysis.AnalyzerContext;
 import com.qwazr.search.analysis.AnalyzerDefinition;
@@ -24,14 +26,19 @@ import com.qwazr.search.field.FieldDefinition;
 import com.qwazr.search.field.FieldTypeInterface;
 import com.qwazr.search.query.JoinQuery;
 import com.qwazr.server.ServerException;
+import com.qwazr.utils.HashUtils;
 import com.qwazr.utils.IOUtils;
 import com.qwazr.utils.StringUtils;
+import com.qwazr.utils.TimeTracker;
+import com.qwazr.utils.json.JsonMapper;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -43,20 +50,30 @@ import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
 import org.apache.lucene.replicator.LocalReplicator;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.join.JoinUtil;
 import org.apache.lucene.search.join.ScoreMode;
 import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -66,13 +83,19 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 final public class IndexInstance implements Closeable {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(IndexInstance.class);
+
+	private final static int STREAM_BATCH_SIZE = 1000;
+	private final static int MIN_DOCUMENTS_PER_THREAD = 500;
+
 	private final IndexFileSet fileSet;
 	private final UUID indexUuid;
 	private final String indexName;
@@ -84,11 +107,22 @@ final public class IndexInstance implements Closeable {
 	private final SnapshotDeletionPolicy snapshotDeletionPolicy;
 	private final IndexWriter indexWriter;
 	private final IndexAndTaxonomyRevision.SnapshotDirectoryTaxonomyWriter taxonomyWriter;
+	private final ConcurrentTaxonomyWriterCache taxonomyWriterCache;
 
 	private final SearcherTaxonomyManager searcherTaxonomyManager;
+	private final ControlledRealTimeReopenThread<SearcherTaxonomyManager.SearcherAndTaxonomy> reopenThread;
 	private final Set<MultiSearchInstance> multiSearchInstances;
-
-	private final ExecutorService executorService;
+	private final AdmissionControl admissionControl;
+	private final SearcherWarmer searcherWarmer;
+	private final MultiThreadSearcherFactory searcherFactory;
+	private final Map<Map<String, Field>, RecordAccessor> recordAccessors;
+	private final Map<Map<String, Field>, RecordHydrator<?>> recordHydrators;
+	private final LRUQueryCache queryCache;
+	private final ResultCache resultCache;
+	private final QueryPlanCache queryPlanCache;
+	private final LiveDocsCounter liveDocsCounter;
+
+	private final IndexExecutors executors;
 	private final IndexSettingsDefinition settings;
 	private final FileResourceLoader fileResourceLoader;
 	private final ClassLoaderManager classLoaderManager;
@@ -97,6 +131,10 @@ final public class IndexInstance implements Closeable {
 	private final IndexReplicator indexReplicator;
 	private final ReentrantLock replicationLock;
 
+	private final ReentrantLock commitLock;
+	private final CommitScheduler commitScheduler;
+	private final Translog translog;
+
 	private final UpdatableAnalyzer indexAnalyzer;
 	private final UpdatableAnalyzer queryAnalyzer;
 
@@ -104,9 +142,10 @@ final public class IndexInstance implements Closeable {
 	private volatile LinkedHashMap<String, AnalyzerDefinition> analyzerMap;
 
 	private volatile Pair<IndexReader, SortedSetDocValuesReaderState> facetsReaderStateCache;
+	private volatile Pair<IndexReader, SortedSetDocValuesReaderState> previousFacetsReaderStateCache;
 	private final ReentrantLock facetsReaderStateCacheLog = new ReentrantLock(true);
 
-	IndexInstance(final IndexInstanceBuilder builder) {
+	IndexInstance(final IndexInstanceBuilder builder) throws IOException {
 		this.classLoaderManager = builder.classLoaderManager;
 		this.schema = builder.schema;
 		this.fileSet = builder.fileSet;
@@ -125,17 +164,41 @@ final public class IndexInstance implements Closeable {
 			this.snapshotDeletionPolicy = null;
 		}
 		this.taxonomyWriter = builder.taxonomyWriter;
+		this.taxonomyWriterCache = builder.taxonomyWriterCache;
 		this.indexAnalyzer = builder.indexAnalyzer;
 		this.queryAnalyzer = builder.queryAnalyzer;
 		this.settings = builder.settings;
 		this.multiSearchInstances = ConcurrentHashMap.newKeySet();
-		this.executorService = builder.executorService;
+		this.admissionControl = new AdmissionControl(indexName, schema, settings);
+		this.executors = builder.executors;
 		this.fileResourceLoader = builder.fileResourceLoader;
 		this.localReplicator = builder.localReplicator;
 		this.indexReplicator = builder.indexReplicator;
 		this.replicationLock = new ReentrantLock(true);
 		this.facetsReaderStateCache = null;
+		this.previousFacetsReaderStateCache = null;
 		this.searcherTaxonomyManager = builder.searcherTaxonomyManager;
+		this.reopenThread = builder.reopenThread;
+		this.liveDocsCounter = new LiveDocsCounter(searcherTaxonomyManager);
+		this.commitLock = new ReentrantLock();
+		this.translog = builder.translog;
+		this.commitScheduler = CommitScheduler.of(indexName, settings, indexWriter, this::nrtCommit);
+		this.queryCache = builder.queryCache;
+		this.resultCache = ResultCache.of(settings);
+		if (resultCache != null)
+			searcherTaxonomyManager.addListener(resultCache);
+		this.queryPlanCache = QueryPlanCache.of(settings);
+		this.searcherWarmer = SearcherWarmer.of(indexName, settings, this::warmUpQuery);
+		this.searcherFactory = builder.searcherFactory;
+		this.recordAccessors = Collections.synchronizedMap(new WeakHashMap<>());
+		this.recordHydrators = Collections.synchronizedMap(new WeakHashMap<>());
+		searcherFactory.setWarmer(this::warm);
+		final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
+		try {
+			getFacetsState(searcherAndTaxonomy.searcher.getIndexReader());
+		} finally {
+			searcherTaxonomyManager.release(searcherAndTaxonomy);
+		}
 	}
 
 	public IndexSettingsDefinition getSettings() {
@@ -148,6 +211,7 @@ final public class IndexInstance implements Closeable {
 
 	@Override
 	public void close() {
+		IOUtils.closeQuietly(commitScheduler, reopenThread, translog);
 		IOUtils.closeQuietly(indexReplicator, searcherTaxonomyManager, indexAnalyzer, queryAnalyzer, localReplicator);
 
 		if (taxonomyWriter != null)
@@ -168,6 +232,36 @@ final public class IndexInstance implements Closeable {
 			FileUtils.deleteQuietly(fileSet.mainDirectory);
 	}
 
+	/**
+	 * @return true if the writer has been rolled back or closed: the index must be reopened
+	 */
+	boolean isWriterClosed() {
+		return indexWriter != null && !indexWriter.isOpen();
+	}
+
+	/**
+	 * @return true if the writer has been opened before the fields of the index sort were defined: the index must be
+	 * reopened to apply the index sort
+	 */
+	boolean isIndexSortDeferred() {
+		return indexWriter != null && settings.indexSort != null && !settings.indexSort.isEmpty() &&
+				indexWriter.getConfig().getIndexSort() == null;
+	}
+
+	/**
+	 * @return true if the writer holds any document, including the deleted and the uncommitted ones
+	 */
+	boolean hasDocuments() {
+		return indexWriter != null && indexWriter.maxDoc() > 0;
+	}
+
+	/**
+	 * @return true if the index sort is deferred and all its fields are now defined
+	 */
+	boolean isIndexSortReady() {
+		return isIndexSortDeferred() && IndexInstanceBuilder.isIndexSortDefined(settings, fieldMap);
+	}
+
 	boolean register(final MultiSearchInstance multiSearchInstance) {
 		return multiSearchInstances.add(multiSearchInstance);
 	}
@@ -181,18 +275,37 @@ final public class IndexInstance implements Closeable {
 		try {
 			return new IndexStatus(indexUuid, indexReplicator != null ? indexReplicator.getMasterUuid() : null,
 					dataDirectory, searcherAndTaxonomy.searcher.getIndexReader(), indexWriter, snapshotDeletionPolicy,
-					settings, analyzerMap.keySet(), fieldMap.getFieldDefinitionMap().keySet());
+					settings, analyzerMap.keySet(), fieldMap.getFieldDefinitionMap().keySet(),
+					taxonomyWriterCache == null ? null : taxonomyWriterCache.getStatus(), admissionControl.getStatus(),
+					searcherWarmer == null ? null : searcherWarmer.getStatus(), queryCache,
+					resultCache == null ? null : resultCache.getStatus(),
+					queryPlanCache == null ? null : queryPlanCache.getStatus(), executors.getStatus());
 		} finally {
 			searcherTaxonomyManager.release(searcherAndTaxonomy);
 		}
 	}
 
+	/**
+	 * @return an upper bound of the number of documents, without any I/O
+	 */
+	long getLiveDocsCount() {
+		return liveDocsCounter.get();
+	}
+
+	/**
+	 * @return the number of documents after a refresh of the searcher, the replaced documents are not counted twice
+	 * @throws IOException if the refresh failed
+	 */
+	long getRefreshedLiveDocsCount() throws IOException {
+		return liveDocsCounter.getRefreshed();
+	}
+
 	LinkedHashMap<String, FieldDefinition> getFields() {
 		return fieldMap.getFieldDefinitionMap();
 	}
 
 	FieldStats getFieldStats(String fieldName) throws IOException {
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.admin);
 		try {
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
@@ -203,18 +316,16 @@ final public class IndexInstance implements Closeable {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	IndexStatus getStatus() throws IOException, InterruptedException {
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.admin);
 		try {
 			return getIndexStatus();
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -228,12 +339,26 @@ final public class IndexInstance implements Closeable {
 
 	synchronized void setFields(final LinkedHashMap<String, FieldDefinition> fields)
 			throws ServerException, IOException {
+		final FieldMap newFieldMap = new FieldMap(fields);
+		if (indexWriter != null && IndexInstanceBuilder.isIndexSortDefined(settings, newFieldMap))
+			IndexInstanceBuilder.buildIndexSort(settings, newFieldMap);
 		fileSet.writeFieldMap(fields);
-		fieldMap = new FieldMap(fields);
+		fieldMap = newFieldMap;
 		refreshFieldsAnalyzers(analyzerMap, fields);
+		invalidateCaches();
 		multiSearchInstances.forEach(MultiSearchInstance::refresh);
 	}
 
+	/**
+	 * The plans and the results computed with the previous fields or analyzers must not be served
+	 */
+	private void invalidateCaches() {
+		if (queryPlanCache != null)
+			queryPlanCache.invalidate();
+		if (resultCache != null)
+			resultCache.invalidate();
+	}
+
 	void setField(final String field_name, final FieldDefinition field) throws IOException, ServerException {
 		final LinkedHashMap<String, FieldDefinition> fields =
 				(LinkedHashMap<String, FieldDefinition>) fieldMap.getFieldDefinitionMap().clone();
@@ -259,6 +384,7 @@ final public class IndexInstance implements Closeable {
 		refreshFieldsAnalyzers(analyzerMap, fieldMap.getFieldDefinitionMap());
 		fileSet.writeAnalyzerMap(analyzers);
 		analyzerMap = analyzers;
+		invalidateCaches();
 		multiSearchInstances.forEach(MultiSearchInstance::refresh);
 	}
 
@@ -299,7 +425,7 @@ final public class IndexInstance implements Closeable {
 
 	public Query createJoinQuery(final JoinQuery joinQuery)
 			throws IOException, ParseException, ReflectiveOperationException, QueryNodeException {
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.search);
 		try {
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
@@ -313,24 +439,109 @@ final public class IndexInstance implements Closeable {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	private void nrtCommit() throws IOException {
-		indexWriter.flush();
-		indexWriter.commit();
-		taxonomyWriter.getIndexWriter().flush();
-		taxonomyWriter.commit();
-		searcherTaxonomyManager.maybeRefresh();
-		localReplicator.publish(new IndexAndTaxonomyRevision(indexWriter, taxonomyWriter));
+		commitLock.lock();
+		try {
+			final Translog.Checkpoint checkpoint = translog == null ? null : translog.checkpoint();
+			if (checkpoint != null)
+				indexWriter.setLiveCommitData(checkpoint.getCommitData(indexWriter.getLiveCommitData()));
+			indexWriter.flush();
+			indexWriter.commit();
+			taxonomyWriter.getIndexWriter().flush();
+			taxonomyWriter.commit();
+			if (checkpoint != null)
+				translog.committed(checkpoint);
+			localReplicator.publish(new IndexAndTaxonomyRevision(indexWriter, taxonomyWriter));
+		} finally {
+			commitLock.unlock();
+		}
+		// The warm-up of the new searcher runs outside of the commit critical section. The refresh is blocking: a
+		// refresh already running may have started before this commit.
+		if (reopenThread == null)
+			searcherTaxonomyManager.maybeRefreshBlocking();
 		multiSearchInstances.forEach(MultiSearchInstance::refresh);
 	}
 
+	/**
+	 * Replay the writes of the translog which are not included in the last commit
+	 *
+	 * @throws IOException if the translog cannot be read or the commit failed
+	 */
+	final void replayTranslog() throws IOException {
+		if (translog == null)
+			return;
+		if (translog.replay(Translog.getCommittedId(indexWriter.getLiveCommitData()), this::replayBatch) > 0)
+			nrtCommit();
+	}
+
+	private void replayBatch(final Translog.Operation operation, final List<Map<String, Object>> documents) {
+		final Consumer<Map<String, Object>> poster =
+				operation == Translog.Operation.POST_DOCUMENTS ? getDocumentPoster() : getDocValuesPoster();
+		for (Map<String, Object> document : documents) {
+			try {
+				poster.accept(document);
+			} catch (RuntimeException e) {
+				if (!indexWriter.isOpen())
+					throw e;
+				LOGGER.warn("Translog replay: document rejected - Index: " + indexName, e);
+			}
+		}
+	}
+
+	/**
+	 * Append a batch to the translog before applying it. A generated ID is given to the posted documents without
+	 * ID, so that a replay does not duplicate them. {@link #endBatch()} must be called once the batch is applied.
+	 *
+	 * @param operation the type of write
+	 * @param documents the documents
+	 * @return the documents to apply
+	 * @throws IOException if the translog entry cannot be written
+	 */
+	private List<Map<String, Object>> beginBatch(final Translog.Operation operation,
+			final Collection<Map<String, Object>> documents) throws IOException {
+		final List<Map<String, Object>> batch = new ArrayList<>(documents.size());
+		for (Map<String, Object> document : documents) {
+			if (translog != null && operation == Translog.Operation.POST_DOCUMENTS &&
+					document.get(FieldDefinition.ID_FIELD) == null) {
+				final Map<String, Object> documentWithId = new LinkedHashMap<>(document);
+				documentWithId.put(FieldDefinition.ID_FIELD, HashUtils.newTimeBasedUUID().toString());
+				batch.add(documentWithId);
+			} else
+				batch.add(document);
+		}
+		if (translog != null)
+			translog.begin(operation, batch);
+		return batch;
+	}
+
+	private void endBatch() {
+		if (translog != null)
+			translog.end();
+	}
+
+	/**
+	 * Without commit policy, the write is committed immediately.
+	 * Otherwise the write is handed to the group commit scheduler.
+	 *
+	 * @param docs          the number of written documents
+	 * @param waitForCommit true to wait for a commit including this write
+	 * @throws IOException          if the commit failed
+	 * @throws InterruptedException if the wait was interrupted
+	 */
+	private void commit(final int docs, final Boolean waitForCommit) throws IOException, InterruptedException {
+		if (commitScheduler == null)
+			nrtCommit();
+		else
+			commitScheduler.afterWrite(docs, waitForCommit != null && waitForCommit);
+	}
+
 	final synchronized BackupStatus backup(final File backupIndexDirectory) throws IOException {
 		checkIsMaster();
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.admin);
 		try {
 			if (!backupIndexDirectory.exists())
 				backupIndexDirectory.mkdir();
@@ -363,19 +574,45 @@ final public class IndexInstance implements Closeable {
 				snapshotDeletionPolicy.release(commit);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
+	/**
+	 * @return the sequence number of the last completed write operation, or null for a slave
+	 */
+	final Long getSequenceNumber() {
+		return indexWriter == null ? null : indexWriter.getMaxCompletedSequenceNumber();
+	}
+
+	/**
+	 * Read-your-writes: wait until the searcher covers the sequence number given by the query.
+	 *
+	 * @param queryDefinition the query
+	 * @throws InterruptedException if the wait was interrupted
+	 * @throws IOException          if the searcher refresh failed
+	 */
+	private void waitForSequenceNumber(final QueryDefinition queryDefinition)
+			throws InterruptedException, IOException {
+		if (queryDefinition == null || queryDefinition.wait_for_seq_no == null || indexWriter == null)
+			return;
+		final long seqNo = queryDefinition.wait_for_seq_no;
+		if (seqNo > indexWriter.getMaxCompletedSequenceNumber())
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"Unknown sequence number: " + seqNo + " - Index: " + indexName);
+		if (reopenThread != null)
+			reopenThread.waitForGeneration(seqNo);
+		else
+			searcherTaxonomyManager.maybeRefreshBlocking();
+	}
+
 	final BackupStatus getBackup(final File backupIndexDirectory) throws IOException {
 		checkIsMaster();
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.admin);
 		try {
 			return BackupStatus.newBackupStatus(backupIndexDirectory);
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -385,6 +622,24 @@ final public class IndexInstance implements Closeable {
 					"Writing in a read only index (slave) is not allowed: " + indexName);
 	}
 
+	/**
+	 * The segments written without the index sort could not be sorted anymore. A write is rejected before being
+	 * applied if it could not be committed.
+	 */
+	private void checkIsWritable() {
+		checkIsMaster();
+		if (isIndexSortDeferred())
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"The fields of the index_sort are not defined: " + indexName);
+		if (commitScheduler != null) {
+			try {
+				commitScheduler.beforeWrite();
+			} catch (IOException e) {
+				throw new ServerException(e);
+			}
+		}
+	}
+
 	final UUID checkRemoteMasterUUID(final String remoteMasterUuid, final UUID localUuid) {
 		final UUID uuid = UUID.fromString(remoteMasterUuid);
 		if (!Objects.equals(uuid, localUuid))
@@ -404,7 +659,7 @@ final public class IndexInstance implements Closeable {
 			throw new ServerException(Response.Status.NOT_ACCEPTABLE,
 					"No replication master has been setup - Index: " + indexName);
 
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 
 		try {
 
@@ -440,33 +695,87 @@ final public class IndexInstance implements Closeable {
 				replicationLock.unlock();
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	final void deleteAll() throws IOException {
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			indexWriter.deleteAll();
 			nrtCommit();
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
+		}
+	}
+
+	/**
+	 * Post the records. Large collections are split across the indexing threads of the schema.
+	 *
+	 * @param records        the records to post
+	 * @param posterSupplier a supplier of new posters
+	 * @param <T>            the type of the records
+	 * @param <P>            the type of the poster
+	 * @return the number of posted records
+	 * @throws InterruptedException if the wait was interrupted
+	 */
+	private <T, P extends RecordsPoster & Consumer<? super T>> int post(final Collection<T> records,
+			final Supplier<P> posterSupplier) throws InterruptedException {
+		final int threads = Math.min(schema.getIndexingThreads(), records.size() / MIN_DOCUMENTS_PER_THREAD);
+		if (threads > 1)
+			return RecordsPoster.postParallel(executors.getMaintenanceExecutor(), threads, records, posterSupplier);
+		final P poster = posterSupplier.get();
+		records.forEach(poster);
+		return poster.counter;
+	}
+
+	private boolean isAppendOnly() {
+		return settings.insertMode == IndexSettingsDefinition.InsertMode.append_only;
+	}
+
+	/**
+	 * The accessors are kept as long as the index is open and the field mapping (held by the annotated service)
+	 * is used: the classes of the records are not retained by a global cache.
+	 *
+	 * @param fields the mapping between the field names and the fields of the record class
+	 * @return the accessor for this mapping, built once and then reused
+	 */
+	final RecordAccessor getRecordAccessor(final Map<String, Field> fields) {
+		return recordAccessors.computeIfAbsent(fields, RecordAccessor::new);
+	}
+
+	/**
+	 * The hydrators are kept like the accessors, see {@link #getRecordAccessor(Map)}
+	 *
+	 * @param objectClass the class of the records
+	 * @param fields      the mapping between the field names and the fields of the class
+	 * @param <T>         the type of the records
+	 * @return the hydrator for this class and mapping, built once and then reused
+	 */
+	final <T> RecordHydrator<T> getRecordHydrator(final Class<T> objectClass, final Map<String, Field> fields) {
+		synchronized (recordHydrators) {
+			final RecordHydrator<?> hydrator = recordHydrators.get(fields);
+			if (hydrator != null && hydrator.getObjectClass() == objectClass)
+				return (RecordHydrator<T>) hydrator;
+			final RecordHydrator<T> newHydrator = new RecordHydrator<>(objectClass, fields);
+			recordHydrators.put(fields, newHydrator);
+			return newHydrator;
 		}
 	}
 
 	private RecordsPoster.UpdateObjectDocument getDocumentPoster(final Map<String, Field> fields) {
-		return new RecordsPoster.UpdateObjectDocument(fields, fieldMap, indexWriter, taxonomyWriter);
+		return new RecordsPoster.UpdateObjectDocument(getRecordAccessor(fields), fieldMap, indexWriter,
+				taxonomyWriter, isAppendOnly());
 	}
 
 	private RecordsPoster.UpdateMapDocument getDocumentPoster() {
-		return new RecordsPoster.UpdateMapDocument(fieldMap, indexWriter, taxonomyWriter);
+		return new RecordsPoster.UpdateMapDocument(fieldMap, indexWriter, taxonomyWriter, isAppendOnly());
 	}
 
 	private RecordsPoster.UpdateObjectDocValues getDocValuesPoster(final Map<String, Field> fields) {
-		return new RecordsPoster.UpdateObjectDocValues(fields, fieldMap, indexWriter, taxonomyWriter);
+		return new RecordsPoster.UpdateObjectDocValues(getRecordAccessor(fields), fieldMap, indexWriter,
+				taxonomyWriter);
 	}
 
 	private RecordsPoster.UpdateMapDocValues getDocValuesPoster() {
@@ -477,52 +786,200 @@ final public class IndexInstance implements Closeable {
 			throws IOException, InterruptedException {
 		if (document == null)
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			schema.checkSize(1);
 			final RecordsPoster.UpdateObjectDocument poster = getDocumentPoster(fields);
 			poster.accept(document);
-			nrtCommit();
+			liveDocsCounter.add(poster.counter);
+			commit(poster.counter, null);
 			return poster.counter;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
-	final int postMappedDocument(final Map<String, Object> document) throws IOException, InterruptedException {
+	final int postMappedDocument(final Map<String, Object> document, final Boolean waitForCommit)
+			throws IOException, InterruptedException {
 		if (document == null || document.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			schema.checkSize(1);
 			final RecordsPoster.UpdateMapDocument poster = getDocumentPoster();
-			poster.accept(document);
-			nrtCommit();
+			final List<Map<String, Object>> batch =
+					beginBatch(Translog.Operation.POST_DOCUMENTS, Collections.singletonList(document));
+			try {
+				poster.accept(batch.get(0));
+			} finally {
+				endBatch();
+			}
+			liveDocsCounter.add(poster.counter);
+			commit(poster.counter, waitForCommit);
 			return poster.counter;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
-	final int postMappedDocuments(final Collection<Map<String, Object>> documents)
+	final int postMappedDocuments(final Collection<Map<String, Object>> documents, final Boolean waitForCommit)
 			throws IOException, InterruptedException {
 		if (documents == null || documents.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
+		try {
+			schema.checkSize(documents.size());
+			final List<Map<String, Object>> batch = beginBatch(Translog.Operation.POST_DOCUMENTS, documents);
+			final int count;
+			try {
+				count = post(batch, this::getDocumentPoster);
+			} finally {
+				endBatch();
+			}
+			liveDocsCounter.add(count);
+			commit(count, waitForCommit);
+			return count;
+		} finally {
+			permit.release();
+		}
+	}
+
+	private void postStreamBatch(final List<Map<String, Object>> documents, final int[] lineNumbers,
+			final PostStreamStatus.Builder status) throws IOException, InterruptedException {
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			schema.checkSize(documents.size());
 			final RecordsPoster.UpdateMapDocument poster = getDocumentPoster();
-			documents.forEach(poster);
-			nrtCommit();
-			return poster.counter;
+			final List<Map<String, Object>> batch = beginBatch(Translog.Operation.POST_DOCUMENTS, documents);
+			try {
+				int i = 0;
+				for (Map<String, Object> document : batch) {
+					try {
+						poster.accept(document);
+					} catch (RuntimeException e) {
+						if (!indexWriter.isOpen())
+							throw e;
+						status.error(lineNumbers[i], e);
+					}
+					i++;
+				}
+			} finally {
+				endBatch();
+			}
+			liveDocsCounter.add(poster.counter);
+			status.count(poster.counter);
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
+		}
+	}
+
+	/**
+	 * Index a stream of newline-delimited JSON documents. The documents are indexed by batches,
+	 * the memory used does not depend on the size of the stream.
+	 *
+	 * @param inputStream   one JSON document per line
+	 * @param waitForCommit true to wait for the commit
+	 * @return the number of indexed documents and the errors by line
+	 * @throws IOException          if the stream cannot be read or the commit failed
+	 * @throws InterruptedException if the wait was interrupted
+	 */
+	final PostStreamStatus postMappedDocuments(final InputStream inputStream, final Boolean waitForCommit)
+			throws IOException, InterruptedException {
+		checkIsWritable();
+		Objects.requireNonNull(inputStream, "The input stream is missing - Index: " + indexName);
+		final PostStreamStatus.Builder status = new PostStreamStatus.Builder();
+		final ObjectReader objectReader = JsonMapper.MAPPER.readerFor(IndexServiceInterface.MapStringObjectTypeRef);
+		final List<Map<String, Object>> documents = new ArrayList<>(STREAM_BATCH_SIZE);
+		final int[] lineNumbers = new int[STREAM_BATCH_SIZE];
+		int count = 0;
+		try (final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				status.line();
+				if (line.trim().isEmpty())
+					continue;
+				try {
+					final Map<String, Object> document = objectReader.readValue(line);
+					if (document == null || document.isEmpty())
+						continue;
+					lineNumbers[documents.size()] = lineNumber;
+					documents.add(document);
+				} catch (JsonProcessingException e) {
+					status.error(lineNumber, e);
+				}
+				if (documents.size() == STREAM_BATCH_SIZE) {
+					postStreamBatch(documents, lineNumbers, status);
+					count += documents.size();
+					documents.clear();
+				}
+			}
+		}
+		if (!documents.isEmpty()) {
+			postStreamBatch(documents, lineNumbers, status);
+			count += documents.size();
+		}
+		if (count > 0)
+			commit(count, waitForCommit);
+		return status.build();
+	}
+
+	/**
+	 * Replace all the documents of the index with the documents of a stream. The documents are written in
+	 * parallel by temporary writers, then added to the index in one pass followed by a single commit.
+	 * The documents written by other requests during the build are deleted. If the segments cannot be added,
+	 * the writer is rolled back (the deletion of the documents is never committed) and the index must be reopened.
+	 * The writes acknowledged before the replacement are committed first, so that the rollback does not lose them.
+	 *
+	 * @param inputStream one JSON document per line
+	 * @param threads     the number of parallel writers, at most (and by default) the indexing threads of the schema
+	 * @return the number of indexed documents and the errors by line
+	 * @throws IOException          if the stream cannot be read or the build failed
+	 * @throws InterruptedException if the build was interrupted
+	 */
+	final PostStreamStatus bulkBuildMappedDocuments(final InputStream inputStream, final Integer threads)
+			throws IOException, InterruptedException {
+		checkIsWritable();
+		Objects.requireNonNull(inputStream, "The input stream is missing - Index: " + indexName);
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
+		try {
+			final PostStreamStatus.Builder status = new PostStreamStatus.Builder();
+			final int maxThreads = schema.getIndexingThreads();
+			try (final BulkBuilder bulkBuilder = new BulkBuilder(indexName, fileSet.bulkDirectory, indexWriterConfig,
+					threads == null ? maxThreads : Math.max(1, Math.min(threads, maxThreads)),
+					writer -> new RecordsPoster.UpdateMapDocument(fieldMap, writer, taxonomyWriter, isAppendOnly()))) {
+				bulkBuilder.build(inputStream, status);
+				// The documents of the index are replaced by the built ones
+				schema.checkSize((int) Math.max(Integer.MIN_VALUE, status.getCount() - getLiveDocsCount()));
+				commitLock.lock();
+				try {
+					// The acknowledged writes of the other requests would be lost by a rollback
+					nrtCommit();
+					try {
+						indexWriter.deleteAll();
+						indexWriter.addIndexes(bulkBuilder.getDirectories());
+						nrtCommit();
+					} catch (IOException | RuntimeException e) {
+						// The pending deleteAll must not be published by the next commit
+						try {
+							indexWriter.rollback();
+						} catch (IOException rollbackError) {
+							e.addSuppressed(rollbackError);
+						}
+						throw e;
+					}
+				} finally {
+					commitLock.unlock();
+				}
+			}
+			return status.build();
+		} finally {
+			permit.release();
 		}
 	}
 
@@ -530,17 +987,16 @@ final public class IndexInstance implements Closeable {
 			throws IOException, InterruptedException {
 		if (documents == null || documents.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			schema.checkSize(documents.size());
-			final RecordsPoster.UpdateObjectDocument poster = getDocumentPoster(fields);
-			documents.forEach(poster);
-			nrtCommit();
-			return poster.counter;
+			final int count = post(documents, () -> getDocumentPoster(fields));
+			liveDocsCounter.add(count);
+			commit(count, null);
+			return count;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -548,18 +1004,16 @@ final public class IndexInstance implements Closeable {
 			throws IOException, InterruptedException {
 		if (documents == null || documents.length == 0)
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			schema.checkSize(documents.length);
-			final RecordsPoster.UpdateObjectDocument poster = getDocumentPoster(fields);
-			for (T document : documents)
-				poster.accept(document);
-			nrtCommit();
-			return poster.counter;
+			final int count = post(Arrays.asList(documents), () -> getDocumentPoster(fields));
+			liveDocsCounter.add(count);
+			commit(count, null);
+			return count;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -567,32 +1021,37 @@ final public class IndexInstance implements Closeable {
 			throws InterruptedException, IOException {
 		if (document == null)
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			final RecordsPoster.UpdateObjectDocValues poster = getDocValuesPoster(fields);
 			poster.accept(document);
-			nrtCommit();
+			commit(poster.counter, null);
 			return poster.counter;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
-	final int updateMappedDocValues(final Map<String, Object> document) throws IOException, InterruptedException {
+	final int updateMappedDocValues(final Map<String, Object> document, final Boolean waitForCommit)
+			throws IOException, InterruptedException {
 		if (document == null || document.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			final RecordsPoster.UpdateMapDocValues poster = getDocValuesPoster();
-			poster.accept(document);
-			nrtCommit();
+			final List<Map<String, Object>> batch =
+					beginBatch(Translog.Operation.UPDATE_DOC_VALUES, Collections.singletonList(document));
+			try {
+				poster.accept(batch.get(0));
+			} finally {
+				endBatch();
+			}
+			commit(poster.counter, waitForCommit);
 			return poster.counter;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -600,16 +1059,14 @@ final public class IndexInstance implements Closeable {
 			throws IOException, InterruptedException {
 		if (documents == null || documents.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
-			final RecordsPoster.UpdateObjectDocValues poster = getDocValuesPoster(fields);
-			documents.forEach(poster);
-			nrtCommit();
-			return poster.counter;
+			final int count = post(documents, () -> getDocValuesPoster(fields));
+			commit(count, null);
+			return count;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
@@ -617,51 +1074,52 @@ final public class IndexInstance implements Closeable {
 			throws IOException, InterruptedException {
 		if (documents == null || documents.length == 0)
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
-			final RecordsPoster.UpdateObjectDocValues poster = getDocValuesPoster(fields);
-			for (T document : documents)
-				poster.accept(document);
-			nrtCommit();
-			return poster.counter;
+			final int count = post(Arrays.asList(documents), () -> getDocValuesPoster(fields));
+			commit(count, null);
+			return count;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
-	final int updateMappedDocsValues(final Collection<Map<String, Object>> documents)
+	final int updateMappedDocsValues(final Collection<Map<String, Object>> documents, final Boolean waitForCommit)
 			throws IOException, ServerException, InterruptedException {
 		if (documents == null || documents.isEmpty())
 			return 0;
-		checkIsMaster();
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		checkIsWritable();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
-			RecordsPoster.UpdateMapDocValues poster = getDocValuesPoster();
-			documents.forEach(poster);
-			nrtCommit();
-			return poster.counter;
+			final List<Map<String, Object>> batch = beginBatch(Translog.Operation.UPDATE_DOC_VALUES, documents);
+			final int count;
+			try {
+				count = post(batch, this::getDocValuesPoster);
+			} finally {
+				endBatch();
+			}
+			commit(count, waitForCommit);
+			return count;
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	final ResultDefinition.WithMap deleteByQuery(final QueryDefinition queryDefinition)
 			throws IOException, InterruptedException, QueryNodeException, ParseException, ServerException,
 			ReflectiveOperationException {
-		checkIsMaster();
+		checkIsWritable();
 		Objects.requireNonNull(queryDefinition, "The queryDefinition is missing - Index: " + indexName);
 		Objects.requireNonNull(queryDefinition.query, "The query is missing - Index: " + indexName);
-		final Semaphore sem = schema.acquireWriteSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
 		try {
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
 				final QueryContext queryContext =
 						new QueryContext(schema, fileResourceLoader, searcherAndTaxonomy.searcher,
-								searcherAndTaxonomy.taxonomyReader, executorService, indexAnalyzer, queryAnalyzer,
-								fieldMap, null, queryDefinition);
+								searcherAndTaxonomy.taxonomyReader, executors.getSearchExecutor(), indexAnalyzer,
+								queryAnalyzer, fieldMap, null, queryDefinition);
 				final Query query = queryDefinition.query.getQuery(queryContext);
 				int docs = indexWriter.numDocs();
 				indexWriter.deleteDocuments(query);
@@ -672,15 +1130,14 @@ final public class IndexInstance implements Closeable {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	final List<TermEnumDefinition> getTermsEnum(final String fieldName, final String prefix, final Integer start,
 			final Integer rows) throws InterruptedException, IOException {
 		Objects.requireNonNull(fieldName, "The field name is missing - Index: " + indexName);
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.search);
 		try {
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
@@ -688,7 +1145,7 @@ final public class IndexInstance implements Closeable {
 				if (fieldMapItem == null)
 					throw new ServerException(Response.Status.NOT_FOUND,
 							"Field not found: " + fieldName + " - Index: " + indexName);
-				FieldTypeInterface fieldType = FieldTypeInterface.getInstance(fieldMapItem);
+				FieldTypeInterface fieldType = fieldMapItem.fieldType;
 				Terms terms = MultiFields.getTerms(searcherAndTaxonomy.searcher.getIndexReader(), fieldName);
 				if (terms == null)
 					return Collections.emptyList();
@@ -698,26 +1155,34 @@ final public class IndexInstance implements Closeable {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
-	private SortedSetDocValuesReaderState getFacetsStateNoLock(final IndexReader indexReader) throws IOException {
+	private Pair<IndexReader, SortedSetDocValuesReaderState> getFacetsStateNoLock(final IndexReader indexReader) {
 		final Pair<IndexReader, SortedSetDocValuesReaderState> current = facetsReaderStateCache;
-		return (current != null && current.getLeft() == indexReader) ? current.getRight() : null;
+		if (current != null && current.getLeft() == indexReader)
+			return current;
+		final Pair<IndexReader, SortedSetDocValuesReaderState> previous = previousFacetsReaderStateCache;
+		return (previous != null && previous.getLeft() == indexReader) ? previous : null;
 	}
 
+	/**
+	 * The state is built by the searcher factory when a new reader is opened, before the searcher is published.
+	 * The searches only build it if they use a reader which was not opened by the factory. The state of the
+	 * previous reader is kept for the searches still running on it. A null state (no SortedSet facet) is cached.
+	 */
 	private SortedSetDocValuesReaderState getFacetsState(final IndexReader indexReader) throws IOException {
-		SortedSetDocValuesReaderState state = getFacetsStateNoLock(indexReader);
-		if (state != null)
-			return state;
+		Pair<IndexReader, SortedSetDocValuesReaderState> current = getFacetsStateNoLock(indexReader);
+		if (current != null)
+			return current.getRight();
 		facetsReaderStateCacheLog.lock();
 		try {
-			state = getFacetsStateNoLock(indexReader);
-			if (state != null)
-				return state;
-			state = IndexUtils.getNewFacetsState(indexReader);
+			current = getFacetsStateNoLock(indexReader);
+			if (current != null)
+				return current.getRight();
+			final SortedSetDocValuesReaderState state = IndexUtils.getNewFacetsState(indexReader);
+			previousFacetsReaderStateCache = facetsReaderStateCache;
 			facetsReaderStateCache = Pair.of(indexReader, state);
 			return state;
 		} finally {
@@ -727,35 +1192,97 @@ final public class IndexInstance implements Closeable {
 
 	private QueryContext buildQueryContext(final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy,
 			final QueryDefinition queryDefinition) throws IOException {
+		return buildQueryContext(searcherAndTaxonomy.searcher, searcherAndTaxonomy.taxonomyReader, queryDefinition);
+	}
+
+	private QueryContext buildQueryContext(final IndexSearcher indexSearcher, final TaxonomyReader taxonomyReader,
+			final QueryDefinition queryDefinition) throws IOException {
 		if (indexWriterConfig != null)
-			searcherAndTaxonomy.searcher.setSimilarity(indexWriterConfig.getSimilarity());
-		final SortedSetDocValuesReaderState facetsState = getFacetsState(searcherAndTaxonomy.searcher.getIndexReader());
-		return new QueryContext(schema, fileResourceLoader, searcherAndTaxonomy.searcher,
-				searcherAndTaxonomy.taxonomyReader, executorService, indexAnalyzer, queryAnalyzer, fieldMap,
-				facetsState, queryDefinition);
+			indexSearcher.setSimilarity(indexWriterConfig.getSimilarity());
+		final SortedSetDocValuesReaderState facetsState = getFacetsState(indexSearcher.getIndexReader());
+		return new QueryContext(schema, fileResourceLoader, indexSearcher, taxonomyReader,
+				executors.getSearchExecutor(), indexAnalyzer, queryAnalyzer, fieldMap, facetsState, queryDefinition);
+	}
+
+	/**
+	 * Called by the searcher factory before a new searcher is published
+	 *
+	 * @param indexSearcher the new searcher
+	 * @throws IOException if the doc values or the facets state cannot be loaded
+	 */
+	private void warm(final IndexSearcher indexSearcher) throws IOException {
+		getFacetsState(indexSearcher.getIndexReader());
+		if (searcherWarmer == null)
+			return;
+		// The taxonomy of the published searcher may not know the categories of the new documents.
+		// The categories are added to the taxonomy before the documents: the latest taxonomy knows them all.
+		try (final DirectoryTaxonomyReader taxonomyReader = taxonomyWriter != null ?
+				new DirectoryTaxonomyReader(taxonomyWriter) :
+				new DirectoryTaxonomyReader(taxonomyDirectory)) {
+			searcherWarmer.warm(indexSearcher, taxonomyReader);
+		}
+	}
+
+	/**
+	 * Execute a warm-up query on a searcher which is not published yet. The collection stops at the deadline.
+	 */
+	private void warmUpQuery(final IndexSearcher indexSearcher, final TaxonomyReader taxonomyReader,
+			final QueryDefinition queryDefinition, final long deadline) throws Exception {
+		new QueryExecution(
+				buildQueryContext(searcherFactory.newDeadlineSearcher(indexSearcher.getIndexReader(), deadline),
+						taxonomyReader, queryDefinition)).execute(ResultDocumentBuilder.MapBuilderFactory.INSTANCE);
 	}
 
 	final ResultDefinition search(final QueryDefinition queryDefinition,
 			final ResultDocumentBuilder.BuilderFactory<?> documentBuilderFactory)
 			throws IOException, InterruptedException, ParseException, ReflectiveOperationException, QueryNodeException {
-		final Semaphore sem = schema.acquireReadSemaphore();
+		// The wait for the searcher refresh does not hold a search slot
+		waitForSequenceNumber(queryDefinition);
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.search);
 		try {
+			if (searcherWarmer != null)
+				searcherWarmer.sample(queryDefinition);
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
-				return new QueryExecution(buildQueryContext(searcherAndTaxonomy, queryDefinition)).execute(
-						documentBuilderFactory);
+				// Only the map results are cached, the object results may be modified by the caller
+				final boolean cacheable = resultCache != null &&
+						documentBuilderFactory == ResultDocumentBuilder.MapBuilderFactory.INSTANCE;
+				final ResultCache.Key cacheKey = cacheable ?
+						ResultCache.key(searcherAndTaxonomy.searcher.getIndexReader(), queryDefinition) :
+						null;
+				final long resultGeneration = cacheKey == null ? 0 : resultCache.getGeneration();
+				if (cacheKey != null) {
+					final TimeTracker timeTracker = new TimeTracker();
+					final ResultDefinition.WithMap cachedResult = resultCache.get(cacheKey);
+					if (cachedResult != null) {
+						timeTracker.next("result_cache");
+						return new ResultDefinition.WithMap(cachedResult, timeTracker.getStatus());
+					}
+				}
+				final ResultDefinition result;
+				if (queryPlanCache != null) {
+					// The generation is read first: a plan built with outdated fields or analyzers is not cached
+					final long planGeneration = queryPlanCache.getGeneration();
+					final QueryContext queryContext = buildQueryContext(searcherAndTaxonomy, queryDefinition);
+					result = new QueryExecution(queryContext, queryPlanCache.get(planGeneration, queryContext)).execute(
+							documentBuilderFactory);
+				} else
+					result = new QueryExecution(buildQueryContext(searcherAndTaxonomy, queryDefinition)).execute(
+							documentBuilderFactory);
+				if (cacheKey != null)
+					resultCache.put(resultGeneration, cacheKey, (ResultDefinition.WithMap) result);
+				return result;
 			} finally {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
 	final Explanation explain(final QueryDefinition queryDefinition, final int docId)
 			throws IOException, ParseException, ReflectiveOperationException, QueryNodeException {
-		final Semaphore sem = schema.acquireReadSemaphore();
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.search);
 		try {
 			final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
 			try {
@@ -764,8 +1291,7 @@ final public class IndexInstance implements Closeable {
 				searcherTaxonomyManager.release(searcherAndTaxonomy);
 			}
 		} finally {
-			if (sem != null)
-				sem.release();
+			permit.release();
 		}
 	}
 
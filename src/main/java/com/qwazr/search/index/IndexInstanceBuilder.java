@@ -20,28 +20,40 @@ import com.qwazr.search.analysis.AnalyzerContext;
 import com.qwazr.search.analysis.AnalyzerDefinition;
 import com.qwazr.search.analysis.UpdatableAnalyzer;
 import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.field.SortUtils;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.IOUtils;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.bloom.BloomFilteringPostingsFormat;
+import org.apache.lucene.codecs.lucene62.Lucene62Codec;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
 import org.apache.lucene.replicator.LocalReplicator;
-import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 
+import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.LinkedHashMap;
 import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
 
 import static org.apache.lucene.replicator.IndexAndTaxonomyRevision.SnapshotDirectoryTaxonomyWriter;
 
@@ -51,10 +63,11 @@ class IndexInstanceBuilder {
 	final IndexFileSet fileSet;
 
 	final ClassLoaderManager classLoaderManager;
-	final ExecutorService executorService;
+	final IndexExecutors executors;
 
 	private final IndexServiceInterface indexService;
-	private final SearcherFactory searcherFactory;
+	final LRUQueryCache queryCache;
+	final MultiThreadSearcherFactory searcherFactory;
 
 	final IndexSettingsDefinition settings;
 	final FileResourceLoader fileResourceLoader;
@@ -68,12 +81,16 @@ class IndexInstanceBuilder {
 
 	IndexWriter indexWriter = null;
 	SnapshotDirectoryTaxonomyWriter taxonomyWriter = null;
+	ConcurrentTaxonomyWriterCache taxonomyWriterCache = null;
 
 	SearcherTaxonomyManager searcherTaxonomyManager = null;
+	ControlledRealTimeReopenThread<SearcherTaxonomyManager.SearcherAndTaxonomy> reopenThread = null;
 
 	UpdatableAnalyzer indexAnalyzer = null;
 	UpdatableAnalyzer queryAnalyzer = null;
 
+	Translog translog = null;
+
 	LocalReplicator localReplicator = null;
 	IndexReplicator indexReplicator = null;
 
@@ -82,9 +99,11 @@ class IndexInstanceBuilder {
 		this.schema = schema;
 		this.fileSet = fileSet;
 		this.classLoaderManager = schema.getClassLoaderManager();
-		this.executorService = schema.getExecutorService();
+		this.executors = schema.getExecutors();
 		this.settings = settings;
-		this.searcherFactory = schema.getSearcherFactory();
+		this.queryCache = buildQueryCache(settings);
+		this.searcherFactory = new MultiThreadSearcherFactory(executors.getSearchExecutor(), queryCache,
+				buildQueryCachingPolicy(settings));
 		this.indexService = schema.getService();
 		this.fileResourceLoader = new FileResourceLoader(classLoaderManager, null, fileSet.resourcesDirectory);
 		this.indexUuid = indexUuid;
@@ -130,9 +149,19 @@ class IndexInstanceBuilder {
 			if (settings.segmentsPerTier != null)
 				mergePolicy.setSegmentsPerTier(settings.segmentsPerTier);
 			indexWriterConfig.setMergePolicy(mergePolicy);
+
+			if (settings.indexSort != null && !settings.indexSort.isEmpty()) {
+				// The index sort is applied once all its fields are defined (see IndexInstance.isIndexSortDeferred)
+				final FieldMap indexSortFieldMap = new FieldMap(fieldMap);
+				if (isIndexSortDefined(settings, indexSortFieldMap))
+					indexWriterConfig.setIndexSort(buildIndexSort(settings, indexSortFieldMap));
+			}
+
+			if (settings.insertMode == IndexSettingsDefinition.InsertMode.auto)
+				indexWriterConfig.setCodec(new IdBloomFilterCodec());
 		}
 
-		indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
+		indexWriterConfig.setMergeScheduler(buildMergeScheduler(settings));
 
 		final SnapshotDeletionPolicy snapshotDeletionPolicy =
 				new SnapshotDeletionPolicy(indexWriterConfig.getIndexDeletionPolicy());
@@ -141,6 +170,161 @@ class IndexInstanceBuilder {
 		indexWriter = checkCommit(new IndexWriter(dataDirectory, indexWriterConfig));
 	}
 
+	static MergeScheduler buildMergeScheduler(final IndexSettingsDefinition settings) {
+		if (settings == null ||
+				settings.mergeScheduler != IndexSettingsDefinition.MergeScheduler.ConcurrentMergeScheduler)
+			return new SerialMergeScheduler();
+		final ConcurrentMergeScheduler mergeScheduler;
+		try {
+			mergeScheduler = settings.mergeMaxMbPerSec == null ?
+					new ConcurrentMergeScheduler() :
+					new CappedMergeScheduler(settings.mergeMaxMbPerSec);
+		} catch (IllegalArgumentException e) {
+			throw new ServerException(Response.Status.BAD_REQUEST, e.getMessage());
+		}
+		if (settings.maxMergeThreads != null || settings.maxMergeCount != null) {
+			final int maxThreadCount = settings.maxMergeThreads != null ?
+					settings.maxMergeThreads :
+					Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+			final int maxMergeCount = settings.maxMergeCount != null ? settings.maxMergeCount : maxThreadCount + 5;
+			try {
+				mergeScheduler.setMaxMergesAndThreads(maxMergeCount, maxThreadCount);
+			} catch (IllegalArgumentException e) {
+				throw new ServerException(Response.Status.BAD_REQUEST, e.getMessage());
+			}
+		}
+		// The MB/s cap relies on the IO throttling
+		if (settings.mergeMaxMbPerSec == null && settings.mergeAutoIoThrottle != null &&
+				!settings.mergeAutoIoThrottle)
+			mergeScheduler.disableAutoIOThrottle();
+		else
+			mergeScheduler.enableAutoIOThrottle();
+		return mergeScheduler;
+	}
+
+	static LRUQueryCache buildQueryCache(final IndexSettingsDefinition settings) {
+		if (settings == null || (settings.queryCacheMaxQueries == null && settings.queryCacheMaxRamMb == null))
+			return null;
+		final int maxQueries = settings.queryCacheMaxQueries == null ?
+				IndexSettingsDefinition.DEFAULT_QUERY_CACHE_MAX_QUERIES :
+				settings.queryCacheMaxQueries;
+		final double maxRamMb = settings.queryCacheMaxRamMb == null ?
+				IndexSettingsDefinition.DEFAULT_QUERY_CACHE_MAX_RAM_MB :
+				settings.queryCacheMaxRamMb;
+		return new LRUQueryCache(maxQueries, (long) (maxRamMb * 1024 * 1024));
+	}
+
+	static QueryCachingPolicy buildQueryCachingPolicy(final IndexSettingsDefinition settings) {
+		if (settings == null || (settings.queryCacheMinSegmentDocs == null && settings.queryCacheMinFrequency == null))
+			return null;
+		return new FrequencyCachingPolicy(settings.queryCacheMinSegmentDocs == null ?
+				IndexSettingsDefinition.DEFAULT_QUERY_CACHE_MIN_SEGMENT_DOCS :
+				settings.queryCacheMinSegmentDocs, settings.queryCacheMinFrequency);
+	}
+
+	/**
+	 * The default usage tracking policy, with a configurable segment size and number of uses before caching
+	 */
+	static class FrequencyCachingPolicy extends UsageTrackingQueryCachingPolicy {
+
+		private final Integer minFrequency;
+
+		FrequencyCachingPolicy(final int minSegmentDocs, final Integer minFrequency) {
+			super(minSegmentDocs, 0.03f, 256);
+			this.minFrequency = minFrequency;
+		}
+
+		@Override
+		protected int minFrequencyToCache(final Query query) {
+			return minFrequency == null ? super.minFrequencyToCache(query) : minFrequency;
+		}
+	}
+
+	/**
+	 * A ConcurrentMergeScheduler whose IO throttling never goes above a fixed rate. This is a soft cap: as with the auto
+	 * IO throttle, the merges below 50 MB are not throttled.
+	 */
+	static class CappedMergeScheduler extends ConcurrentMergeScheduler {
+
+		private final double maxMbPerSec;
+
+		CappedMergeScheduler(final double maxMbPerSec) {
+			if (!(maxMbPerSec > 0) || Double.isInfinite(maxMbPerSec))
+				throw new IllegalArgumentException("merge_max_mb_per_sec must be a positive number: " + maxMbPerSec);
+			this.maxMbPerSec = maxMbPerSec;
+			setForceMergeMBPerSec(maxMbPerSec);
+			targetMBPerSec = Math.min(targetMBPerSec, maxMbPerSec);
+		}
+
+		@Override
+		protected void targetMBPerSecChanged() {
+			if (targetMBPerSec > maxMbPerSec)
+				targetMBPerSec = maxMbPerSec;
+		}
+	}
+
+	/**
+	 * The default codec with a bloom filter on the primary key. The delete term of an update skips the segments
+	 * which do not contain the ID without seeking their terms dictionary.
+	 */
+	static class IdBloomFilterCodec extends Lucene62Codec {
+
+		private final PostingsFormat idPostingsFormat =
+				new BloomFilteringPostingsFormat(PostingsFormat.forName("Lucene50"));
+
+		@Override
+		public PostingsFormat getPostingsFormatForField(final String field) {
+			return FieldDefinition.ID_FIELD.equals(field) ? idPostingsFormat : super.getPostingsFormatForField(field);
+		}
+	}
+
+	/**
+	 * Check that every field of the index sort is defined. The special fields ($score, $doc) are considered as
+	 * defined, they are rejected by {@link #buildIndexSort(IndexSettingsDefinition, FieldMap)}.
+	 *
+	 * @param settings the settings of the index
+	 * @param fieldMap the fields of the index
+	 * @return true if the index sort can be built
+	 */
+	static boolean isIndexSortDefined(final IndexSettingsDefinition settings, final FieldMap fieldMap) {
+		if (settings == null || settings.indexSort == null || settings.indexSort.isEmpty())
+			return false;
+		for (String fieldName : settings.indexSort.keySet()) {
+			if (fieldName == null || fieldName.isEmpty() || fieldName.startsWith("$"))
+				continue;
+			try {
+				fieldMap.find(fieldName);
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Build the sort of the segments from the index_sort setting
+	 *
+	 * @param settings the settings of the index
+	 * @param fieldMap the fields of the index
+	 * @return the index sort, or null if no index sort is defined
+	 * @throws ServerException if a field is unknown or does not support sorting
+	 */
+	static Sort buildIndexSort(final IndexSettingsDefinition settings, final FieldMap fieldMap) {
+		if (settings == null || settings.indexSort == null || settings.indexSort.isEmpty())
+			return null;
+		final Sort indexSort;
+		try {
+			indexSort = SortUtils.buildSort(fieldMap, settings.indexSort);
+		} catch (IllegalArgumentException e) {
+			throw new ServerException(Response.Status.BAD_REQUEST, "Wrong index_sort: " + e.getMessage());
+		}
+		for (SortField sortField : indexSort.getSort())
+			if (sortField.getType() == SortField.Type.SCORE || sortField.getType() == SortField.Type.DOC)
+				throw new ServerException(Response.Status.BAD_REQUEST,
+						"Wrong index_sort: only doc values fields are supported");
+		return indexSort;
+	}
+
 	private IndexWriter checkCommit(final IndexWriter indexWriter) throws IOException {
 		if (indexWriter.hasUncommittedChanges())
 			indexWriter.commit();
@@ -148,7 +332,9 @@ class IndexInstanceBuilder {
 	}
 
 	private void openOrCreateTaxonomyIndex() throws IOException {
-		taxonomyWriter = new SnapshotDirectoryTaxonomyWriter(taxonomyDirectory);
+		taxonomyWriterCache = ConcurrentTaxonomyWriterCache.of(settings);
+		taxonomyWriter = new SnapshotDirectoryTaxonomyWriter(taxonomyDirectory,
+				IndexWriterConfig.OpenMode.CREATE_OR_APPEND, taxonomyWriterCache);
 		checkCommit(taxonomyWriter.getIndexWriter());
 	}
 
@@ -174,15 +360,32 @@ class IndexInstanceBuilder {
 		openOrCreateDataIndex();
 		openOrCreateTaxonomyIndex();
 
+		// The writes not included in the last commit are replayed once the instance is built
+		translog = Translog.of(fileSet.mainDirectory.getName(), settings, fileSet.translogDirectory,
+				Translog.getCommittedId(indexWriter.getLiveCommitData()));
+
 		// Manage the master replication (revision publishing)
 		localReplicator = new LocalReplicator();
 		localReplicator.publish(new IndexAndTaxonomyRevision(indexWriter, taxonomyWriter));
 
 		// Finally we build the SearcherManager
 		searcherTaxonomyManager = new SearcherTaxonomyManager(indexWriter, true, searcherFactory, taxonomyWriter);
+
+		// The searcher refresh is decoupled from the commit if a staleness is defined
+		if (settings.nrtMaxStaleMs != null) {
+			final long minStaleMs = settings.nrtMinStaleMs == null ?
+					IndexSettingsDefinition.DEFAULT_NRT_MIN_STALE_MS :
+					settings.nrtMinStaleMs;
+			reopenThread = new ControlledRealTimeReopenThread<>(indexWriter, searcherTaxonomyManager,
+					settings.nrtMaxStaleMs / 1000.0, minStaleMs / 1000.0);
+			reopenThread.setName("qwazr-nrt-" + fileSet.mainDirectory.getName());
+			reopenThread.setDaemon(true);
+			reopenThread.start();
+		}
 	}
 
 	private void abort() {
+		IOUtils.closeQuietly(reopenThread, translog);
 		IOUtils.closeQuietly(indexReplicator, searcherTaxonomyManager, indexAnalyzer, queryAnalyzer, localReplicator);
 
 		if (taxonomyWriter != null)
@@ -203,7 +406,14 @@ class IndexInstanceBuilder {
 				buildSlave();
 			else
 				buildMaster();
-			return new IndexInstance(this);
+			final IndexInstance indexInstance = new IndexInstance(this);
+			try {
+				indexInstance.replayTranslog();
+			} catch (IOException | RuntimeException e) {
+				IOUtils.closeQuietly(indexInstance);
+				throw e;
+			}
+			return indexInstance;
 		} catch (IOException | ReflectiveOperationException | URISyntaxException e) {
 			abort();
 			throw e;
@@ -15,11 +15,15 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.server.ServerException;
 import com.qwazr.utils.IOUtils;
 import com.qwazr.utils.LockUtils;
 import org.apache.lucene.index.CheckIndex;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.store.Directory;
 
+import javax.ws.rs.core.Response;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -65,6 +69,10 @@ class IndexInstanceManager implements Closeable {
 			final boolean same = Objects.equals(settings, this.settings);
 			if (same && indexInstance != null)
 				return indexInstance;
+			if (settings != null && !same) {
+				checkIndexSort(settings);
+				checkSettings(settings);
+			}
 			closeIndex();
 			if (settings != null && !same) {
 				this.settings = settings;
@@ -74,6 +82,85 @@ class IndexInstanceManager implements Closeable {
 		});
 	}
 
+	/**
+	 * The sort of the segments cannot be changed, and an index sort cannot be added once documents have been written.
+	 * The fields of the index sort which are already defined must support sorting. The index sort can be set before
+	 * its fields: it is applied when the fields are defined.
+	 *
+	 * @param newSettings the new settings
+	 * @throws IOException if the field map cannot be read
+	 */
+	private void checkIndexSort(final IndexSettingsDefinition newSettings) throws IOException {
+		if (newSettings.master != null)
+			return;
+		final boolean hasCurrentSort = settings != null && settings.indexSort != null && !settings.indexSort.isEmpty();
+		if (hasCurrentSort && !Objects.equals(settings.indexSort, newSettings.indexSort))
+			throw new ServerException(Response.Status.BAD_REQUEST, "The index_sort of an index cannot be changed");
+		final boolean hasNewSort = newSettings.indexSort != null && !newSettings.indexSort.isEmpty();
+		// Lucene cannot open a writer with an index sort on segments written without it
+		if (!hasCurrentSort && hasNewSort && hasDocuments())
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"The index_sort cannot be added to an index which contains documents");
+		final FieldMap fieldMap = new FieldMap(fileSet.loadFieldMap());
+		if (IndexInstanceBuilder.isIndexSortDefined(newSettings, fieldMap))
+			IndexInstanceBuilder.buildIndexSort(newSettings, fieldMap);
+	}
+
+	/**
+	 * Check the settings which would prevent the index from being opened once they are written
+	 *
+	 * @param newSettings the new settings
+	 */
+	private static void checkSettings(final IndexSettingsDefinition newSettings) {
+		IndexInstanceBuilder.buildMergeScheduler(newSettings);
+		// A batch applied during a commit can be both in the commit and in the replayed translog:
+		// the replay relies on the replacement by ID to not duplicate the documents
+		if (newSettings.translog != null && newSettings.translog &&
+				newSettings.insertMode == IndexSettingsDefinition.InsertMode.append_only)
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"The translog cannot be used with the append_only insert mode");
+		if (newSettings.warmUpTimeBudgetMs != null && newSettings.warmUpTimeBudgetMs <= 0)
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"warm_up_time_budget_ms must be greater than zero: " + newSettings.warmUpTimeBudgetMs);
+		// Checked before the settings are written: an invalid cache size would prevent the index from opening
+		if (newSettings.taxonomyWriterCacheSize != null && newSettings.taxonomyWriterCacheSize <= 0)
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"taxonomy_writer_cache_size must be greater than zero: " + newSettings.taxonomyWriterCacheSize);
+		if (newSettings.taxonomyFrontCacheSize != null && newSettings.taxonomyFrontCacheSize < 0)
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"taxonomy_front_cache_size must be positive: " + newSettings.taxonomyFrontCacheSize);
+	}
+
+	/**
+	 * @return true if the index contains any document, committed or not
+	 * @throws IOException if the segments cannot be read
+	 */
+	private boolean hasDocuments() throws IOException {
+		if (indexInstance != null)
+			return indexInstance.hasDocuments();
+		if (!fileSet.dataDirectory.exists())
+			return false;
+		try (final Directory directory = IndexInstanceBuilder.getDirectory(
+				settings == null ? IndexSettingsDefinition.EMPTY : settings, fileSet.dataDirectory)) {
+			return DirectoryReader.indexExists(directory) && SegmentInfos.readLatestCommit(directory).totalMaxDoc() > 0;
+		}
+	}
+
+	/**
+	 * Close the given instance and open a new one, if the given instance is still the current one
+	 *
+	 * @param failedInstance the instance which cannot be used anymore
+	 * @return the current instance
+	 * @throws Exception if the index cannot be opened
+	 */
+	IndexInstance reopen(final IndexInstance failedInstance) throws Exception {
+		return rwl.writeEx(() -> {
+			if (indexInstance == failedInstance)
+				closeIndex();
+			return ensureOpen();
+		});
+	}
+
 	CheckIndex.Status check() throws IOException {
 		return rwl.writeEx(() -> {
 			closeIndex();
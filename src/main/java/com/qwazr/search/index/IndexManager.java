@@ -55,12 +55,16 @@ public class IndexManager implements Closeable {
 
 	private final IndexServiceInterface service;
 
-	private final ExecutorService executorService;
+	private final IndexExecutors executors;
 
 	public IndexManager(final ClassLoaderManager classLoaderManager, final GenericServer.Builder builder,
 			final ExecutorService executorService) throws IOException {
-		this(classLoaderManager, new File(builder.getConfiguration().dataDirectory, INDEXES_DIRECTORY),
-				executorService);
+		this(classLoaderManager, builder, new IndexExecutors(executorService));
+	}
+
+	public IndexManager(final ClassLoaderManager classLoaderManager, final GenericServer.Builder builder,
+			final IndexExecutors executors) throws IOException {
+		this(classLoaderManager, new File(builder.getConfiguration().dataDirectory, INDEXES_DIRECTORY), executors);
 		builder.webService(IndexServiceImpl.class);
 		builder.shutdownListener(server -> close());
 		builder.contextAttribute(this);
@@ -68,13 +72,18 @@ public class IndexManager implements Closeable {
 
 	public IndexManager(final ClassLoaderManager classLoaderManager, final Path workDirectory,
 			final ExecutorService executorService) throws IOException {
-		this(classLoaderManager, workDirectory.toFile(), executorService);
+		this(classLoaderManager, workDirectory.toFile(), new IndexExecutors(executorService));
 	}
 
 	public IndexManager(final ClassLoaderManager classLoaderManager, final File workDirectory,
 			final ExecutorService executorService) throws IOException {
+		this(classLoaderManager, workDirectory, new IndexExecutors(executorService));
+	}
+
+	public IndexManager(final ClassLoaderManager classLoaderManager, final File workDirectory,
+			final IndexExecutors executors) throws IOException {
 		this.rootDirectory = workDirectory;
-		this.executorService = executorService;
+		this.executors = executors;
 		if (!rootDirectory.exists())
 			rootDirectory.mkdir();
 		if (!rootDirectory.isDirectory())
@@ -90,7 +99,7 @@ public class IndexManager implements Closeable {
 		for (File schemaDirectory : directories) {
 			try {
 				schemaMap.put(schemaDirectory.getName(),
-						new SchemaInstance(classLoaderManager, service, schemaDirectory, executorService));
+						new SchemaInstance(classLoaderManager, service, schemaDirectory, executors));
 			} catch (ServerException | IOException | ReflectiveOperationException | URISyntaxException e) {
 				LOGGER.error(e.getMessage(), e);
 			}
@@ -118,7 +127,7 @@ public class IndexManager implements Closeable {
 			SchemaInstance schemaInstance = schemaMap.get(schemaName);
 			if (schemaInstance == null) {
 				schemaInstance = new SchemaInstance(classLoaderManager, service, new File(rootDirectory, schemaName),
-						executorService);
+						executors);
 				schemaMap.put(schemaName, schemaInstance);
 			}
 			if (settings != null)
@@ -109,6 +109,22 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		throw new ServerException(Response.Status.UNAUTHORIZED);
 	}
 
+	/**
+	 * Return the sequence number of the last write to the client (read-your-writes token)
+	 *
+	 * @param indexInstance the written index
+	 * @param result        the result of the write
+	 * @return the result
+	 */
+	private Integer withSequenceNumber(final IndexInstance indexInstance, final Integer result) {
+		if (response == null)
+			return result;
+		final Long seqNo = indexInstance.getSequenceNumber();
+		if (seqNo != null)
+			response.setHeader(SEQ_NO_HEADER, seqNo.toString());
+		return result;
+	}
+
 	@Override
 	final public Set<String> getIndexes(final String schemaName) {
 		try {
@@ -206,13 +222,25 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final LinkedHashMap<String, FieldDefinition> fields) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setFields(fields);
+			final SchemaInstance schemaInstance = indexManager.get(schemaName);
+			final IndexInstance indexInstance = schemaInstance.get(indexName, false);
+			indexInstance.setFields(fields);
+			reopenIfIndexSortDeferred(schemaInstance, indexName, indexInstance);
 			return fields;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
 	}
 
+	/**
+	 * The index sort is applied by reopening the writer once all its fields are defined
+	 */
+	private static void reopenIfIndexSortDeferred(final SchemaInstance schemaInstance, final String indexName,
+			final IndexInstance indexInstance) {
+		if (indexInstance.isIndexSortReady())
+			schemaInstance.reopen(indexName, indexInstance);
+	}
+
 	private List<TermDefinition> doAnalyzer(final String schemaName, final String indexName, final String fieldName,
 			final String text, final boolean index) throws ServerException, IOException {
 		checkRight(schemaName);
@@ -276,7 +304,10 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final FieldDefinition field) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setField(fieldName, field);
+			final SchemaInstance schemaInstance = indexManager.get(schemaName);
+			final IndexInstance indexInstance = schemaInstance.get(indexName, false);
+			indexInstance.setField(fieldName, field);
+			reopenIfIndexSortDeferred(schemaInstance, indexName, indexInstance);
 			return field;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -388,6 +419,16 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		}
 	}
 
+	@Override
+	final public Long getSequenceNumber(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).get(indexName, false).getSequenceNumber();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
 	@Override
 	public IndexCheckStatus checkIndex(String schemaName, String indexName) {
 		try {
@@ -411,10 +452,11 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public Integer postMappedDocument(final String schemaName, final String indexName,
-			final Map<String, Object> document) {
+			final Map<String, Object> document, final Boolean waitForCommit) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).postMappedDocument(document);
+			final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, true);
+			return withSequenceNumber(indexInstance, indexInstance.postMappedDocument(document, waitForCommit));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -422,10 +464,46 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public Integer postMappedDocuments(final String schemaName, final String indexName,
-			final Collection<Map<String, Object>> documents) {
+			final Collection<Map<String, Object>> documents, final Boolean waitForCommit) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).postMappedDocuments(documents);
+			final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, true);
+			return withSequenceNumber(indexInstance, indexInstance.postMappedDocuments(documents, waitForCommit));
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public PostStreamStatus postMappedDocuments(final String schemaName, final String indexName,
+			final InputStream inputStream, final Boolean waitForCommit) {
+		try {
+			checkRight(schemaName);
+			final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, true);
+			final PostStreamStatus status = indexInstance.postMappedDocuments(inputStream, waitForCommit);
+			withSequenceNumber(indexInstance, status.count);
+			return status;
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public PostStreamStatus bulkBuildMappedDocuments(final String schemaName, final String indexName,
+			final InputStream inputStream, final Integer threads) {
+		try {
+			checkRight(schemaName);
+			final SchemaInstance schemaInstance = indexManager.get(schemaName);
+			final IndexInstance indexInstance = schemaInstance.get(indexName, true);
+			final PostStreamStatus status;
+			try {
+				status = indexInstance.bulkBuildMappedDocuments(inputStream, threads);
+			} finally {
+				if (indexInstance.isWriterClosed())
+					schemaInstance.reopen(indexName, indexInstance);
+			}
+			withSequenceNumber(indexInstance, status.count);
+			return status;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -454,10 +532,11 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public Integer updateMappedDocValues(final String schemaName, final String indexName,
-			final Map<String, Object> document) {
+			final Map<String, Object> document, final Boolean waitForCommit) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).updateMappedDocValues(document);
+			final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, true);
+			return withSequenceNumber(indexInstance, indexInstance.updateMappedDocValues(document, waitForCommit));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -465,10 +544,11 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public Integer updateMappedDocsValues(final String schemaName, final String indexName,
-			final Collection<Map<String, Object>> documents) {
+			final Collection<Map<String, Object>> documents, final Boolean waitForCommit) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).updateMappedDocsValues(documents);
+			final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, true);
+			return withSequenceNumber(indexInstance, indexInstance.updateMappedDocsValues(documents, waitForCommit));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -679,8 +759,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			throws InterruptedException, ReflectiveOperationException, QueryNodeException, ParseException, IOException {
 		checkRight(schemaName);
 		final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
-		return index.search(query,
-				ResultDocumentBuilder.ObjectBuilderFactory.createFactory(fields, indexDefinitionClass));
+		return index.search(query, ResultDocumentBuilder.ObjectBuilderFactory.createFactory(
+				index.getRecordHydrator(indexDefinitionClass, fields)));
 	}
 
 	@Override
@@ -775,9 +855,10 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final QueryDefinition query, final Map<String, Field> fields, final Class<T> indexDefinitionClass) {
 		try {
 			checkRight(schemaName);
-			final ResultDocumentBuilder.ObjectBuilderFactory documentBuilderFactory =
-					ResultDocumentBuilder.ObjectBuilderFactory.createFactory(fields, indexDefinitionClass);
 			final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
+			final ResultDocumentBuilder.ObjectBuilderFactory<T> documentBuilderFactory =
+					ResultDocumentBuilder.ObjectBuilderFactory.createFactory(
+							index.getRecordHydrator(indexDefinitionClass, fields));
 			return (ResultDefinition.WithObject<T>) index.search(query, documentBuilderFactory);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
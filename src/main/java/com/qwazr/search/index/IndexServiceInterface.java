@@ -49,9 +49,12 @@ public interface IndexServiceInterface extends ServiceInterface {
 
 	String SERVICE_NAME = "search";
 	String PATH = "indexes";
+	String SEQ_NO_HEADER = "X-QWAZR-Seq-No";
 
 	String MEDIATYPE_TEXT_GRAPHVIZ = "text/vnd.graphviz";
 
+	String MEDIATYPE_APPLICATION_NDJSON = "application/x-ndjson";
+
 	@POST
 	@Path("/{schema_name}")
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
@@ -208,6 +211,12 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
 	IndexStatus getIndex(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name);
 
+	@GET
+	@Path("/{schema_name}/{index_name}/seq_no")
+	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+	Long getSequenceNumber(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name);
+
 	@POST
 	@Path("/{schema_name}/{index_name}/check")
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
@@ -243,28 +252,67 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
 	Integer postMappedDocument(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name,
-			Map<String, Object> document);
+			Map<String, Object> document, @QueryParam("wait_for_commit") Boolean wait_for_commit);
+
+	default Integer postMappedDocument(String schema_name, String index_name, Map<String, Object> document) {
+		return postMappedDocument(schema_name, index_name, document, null);
+	}
 
 	@POST
 	@Path("/{schema_name}/{index_name}/docs")
 	@Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
 	Integer postMappedDocuments(@PathParam("schema_name") String schema_name,
-			@PathParam("index_name") String index_name, Collection<Map<String, Object>> documents);
+			@PathParam("index_name") String index_name, Collection<Map<String, Object>> documents,
+			@QueryParam("wait_for_commit") Boolean wait_for_commit);
+
+	default Integer postMappedDocuments(String schema_name, String index_name,
+			Collection<Map<String, Object>> documents) {
+		return postMappedDocuments(schema_name, index_name, documents, null);
+	}
+
+	@POST
+	@Path("/{schema_name}/{index_name}/docs/stream")
+	@Consumes({ MEDIATYPE_APPLICATION_NDJSON, MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM,
+			MediaType.APPLICATION_JSON })
+	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+	PostStreamStatus postMappedDocuments(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name, InputStream inputStream,
+			@QueryParam("wait_for_commit") Boolean wait_for_commit);
+
+	@POST
+	@Path("/{schema_name}/{index_name}/docs/bulk")
+	@Consumes({ MEDIATYPE_APPLICATION_NDJSON, MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM,
+			MediaType.APPLICATION_JSON })
+	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+	PostStreamStatus bulkBuildMappedDocuments(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name, InputStream inputStream,
+			@QueryParam("threads") Integer threads);
 
 	@POST
 	@Path("/{schema_name}/{index_name}/doc/values")
 	@Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
 	Integer updateMappedDocValues(@PathParam("schema_name") String schema_name,
-			@PathParam("index_name") String index_name, Map<String, Object> document);
+			@PathParam("index_name") String index_name, Map<String, Object> document,
+			@QueryParam("wait_for_commit") Boolean wait_for_commit);
+
+	default Integer updateMappedDocValues(String schema_name, String index_name, Map<String, Object> document) {
+		return updateMappedDocValues(schema_name, index_name, document, null);
+	}
 
 	@POST
 	@Path("/{schema_name}/{index_name}/docs/values")
 	@Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
 	@Produces(ServiceInterface.APPLICATION_JSON_UTF8)
 	Integer updateMappedDocsValues(@PathParam("schema_name") String schema_name,
-			@PathParam("index_name") String index_name, Collection<Map<String, Object>> documents);
+			@PathParam("index_name") String index_name, Collection<Map<String, Object>> documents,
+			@QueryParam("wait_for_commit") Boolean wait_for_commit);
+
+	default Integer updateMappedDocsValues(String schema_name, String index_name,
+			Collection<Map<String, Object>> documents) {
+		return updateMappedDocsValues(schema_name, index_name, documents, null);
+	}
 
 	@POST
 	@Path("/{schema_name}/{index_name}/backup/{backup_name}")
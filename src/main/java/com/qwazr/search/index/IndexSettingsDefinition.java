@@ -17,6 +17,7 @@ package com.qwazr.search.index;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.qwazr.search.annotations.Index;
 import com.qwazr.utils.StringUtils;
 import com.qwazr.utils.json.JsonMapper;
@@ -24,6 +25,9 @@ import org.apache.lucene.search.similarities.Similarity;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
 
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
@@ -33,9 +37,29 @@ public class IndexSettingsDefinition {
 		FSDirectory, RAMDirectory
 	}
 
+	public enum MergeScheduler {
+		SerialMergeScheduler, ConcurrentMergeScheduler
+	}
+
+	public enum TaxonomyWriterCache {
+		LruTaxonomyWriterCache, Cl2oTaxonomyWriterCache
+	}
+
+	public enum InsertMode {
+		auto, append_only
+	}
+
 	public static final int DEFAULT_MAX_MERGE_AT_ONCE = 10;
 	public static final int DEFAULT_SEGMENTS_PER_TIER = 10;
 	public static final double DEFAULT_MAX_MERGED_SEGMENT_MB = 5 * 1024 * 1024;
+	public static final long DEFAULT_COMMIT_INTERVAL_MS = 1000;
+	public static final long DEFAULT_NRT_MIN_STALE_MS = 0;
+	public static final int DEFAULT_QUERY_CACHE_MAX_QUERIES = 1000;
+	public static final double DEFAULT_QUERY_CACHE_MAX_RAM_MB = 32;
+	public static final int DEFAULT_QUERY_CACHE_MIN_SEGMENT_DOCS = 10000;
+	public static final int DEFAULT_RESULT_CACHE_MAX_ENTRIES = 1000;
+	public static final long DEFAULT_WARM_UP_TIME_BUDGET_MS = 5000;
+	public static final double DEFAULT_RESULT_CACHE_MAX_RAM_MB = 16;
 
 	@JsonProperty("similarity_class")
 	final public String similarityClass;
@@ -57,6 +81,95 @@ public class IndexSettingsDefinition {
 	@JsonProperty("segments_per_tier")
 	final public Double segmentsPerTier;
 
+	@JsonProperty("commit_interval_ms")
+	final public Long commitIntervalMs;
+
+	@JsonProperty("commit_max_pending_docs")
+	final public Integer commitMaxPendingDocs;
+
+	@JsonProperty("commit_max_pending_bytes")
+	final public Long commitMaxPendingBytes;
+
+	@JsonProperty("nrt_min_stale_ms")
+	final public Long nrtMinStaleMs;
+
+	@JsonProperty("nrt_max_stale_ms")
+	final public Long nrtMaxStaleMs;
+
+	@JsonProperty("index_sort")
+	final public LinkedHashMap<String, QueryDefinition.SortEnum> indexSort;
+
+	final public Boolean translog;
+
+	@JsonProperty("merge_scheduler")
+	final public MergeScheduler mergeScheduler;
+
+	@JsonProperty("max_merge_threads")
+	final public Integer maxMergeThreads;
+
+	@JsonProperty("max_merge_count")
+	final public Integer maxMergeCount;
+
+	@JsonProperty("merge_auto_io_throttle")
+	final public Boolean mergeAutoIoThrottle;
+
+	@JsonProperty("merge_max_mb_per_sec")
+	final public Double mergeMaxMbPerSec;
+
+	@JsonProperty("insert_mode")
+	final public InsertMode insertMode;
+
+	@JsonProperty("max_concurrent_searches")
+	final public Integer maxConcurrentSearches;
+
+	@JsonProperty("max_concurrent_writes")
+	final public Integer maxConcurrentWrites;
+
+	@JsonProperty("max_queued_requests")
+	final public Integer maxQueuedRequests;
+
+	@JsonProperty("max_queue_time_ms")
+	final public Long maxQueueTimeMs;
+
+	@JsonProperty("warm_up_queries")
+	final public List<QueryDefinition> warmUpQueries;
+
+	@JsonProperty("warm_up_recent_queries")
+	final public Integer warmUpRecentQueries;
+
+	@JsonProperty("warm_up_time_budget_ms")
+	final public Long warmUpTimeBudgetMs;
+
+	@JsonProperty("query_cache_max_queries")
+	final public Integer queryCacheMaxQueries;
+
+	@JsonProperty("query_cache_max_ram_mb")
+	final public Double queryCacheMaxRamMb;
+
+	@JsonProperty("query_cache_min_segment_docs")
+	final public Integer queryCacheMinSegmentDocs;
+
+	@JsonProperty("query_cache_min_frequency")
+	final public Integer queryCacheMinFrequency;
+
+	@JsonProperty("result_cache_max_entries")
+	final public Integer resultCacheMaxEntries;
+
+	@JsonProperty("result_cache_max_ram_mb")
+	final public Double resultCacheMaxRamMb;
+
+	@JsonProperty("query_plan_cache_size")
+	final public Integer queryPlanCacheSize;
+
+	@JsonProperty("taxonomy_writer_cache")
+	final public TaxonomyWriterCache taxonomyWriterCache;
+
+	@JsonProperty("taxonomy_writer_cache_size")
+	final public Integer taxonomyWriterCacheSize;
+
+	@JsonProperty("taxonomy_front_cache_size")
+	final public Integer taxonomyFrontCacheSize;
+
 	public IndexSettingsDefinition() {
 		directoryType = null;
 		similarityClass = null;
@@ -65,6 +178,36 @@ public class IndexSettingsDefinition {
 		maxMergeAtOnce = null;
 		maxMergedSegmentMB = null;
 		segmentsPerTier = null;
+		commitIntervalMs = null;
+		commitMaxPendingDocs = null;
+		commitMaxPendingBytes = null;
+		nrtMinStaleMs = null;
+		nrtMaxStaleMs = null;
+		translog = null;
+		indexSort = null;
+		mergeScheduler = null;
+		maxMergeThreads = null;
+		maxMergeCount = null;
+		mergeAutoIoThrottle = null;
+		mergeMaxMbPerSec = null;
+		insertMode = null;
+		maxConcurrentSearches = null;
+		maxConcurrentWrites = null;
+		maxQueuedRequests = null;
+		maxQueueTimeMs = null;
+		warmUpQueries = null;
+		warmUpRecentQueries = null;
+		warmUpTimeBudgetMs = null;
+		queryCacheMaxQueries = null;
+		queryCacheMaxRamMb = null;
+		queryCacheMinSegmentDocs = null;
+		queryCacheMinFrequency = null;
+		resultCacheMaxEntries = null;
+		resultCacheMaxRamMb = null;
+		queryPlanCacheSize = null;
+		taxonomyWriterCache = null;
+		taxonomyWriterCacheSize = null;
+		taxonomyFrontCacheSize = null;
 	}
 
 	private IndexSettingsDefinition(final Builder builder) {
@@ -75,6 +218,36 @@ public class IndexSettingsDefinition {
 		this.maxMergeAtOnce = builder.maxMergeAtOnce;
 		this.maxMergedSegmentMB = builder.maxMergedSegmentMB;
 		this.segmentsPerTier = builder.segmentsPerTier;
+		this.commitIntervalMs = builder.commitIntervalMs;
+		this.commitMaxPendingDocs = builder.commitMaxPendingDocs;
+		this.commitMaxPendingBytes = builder.commitMaxPendingBytes;
+		this.nrtMinStaleMs = builder.nrtMinStaleMs;
+		this.nrtMaxStaleMs = builder.nrtMaxStaleMs;
+		this.translog = builder.translog;
+		this.indexSort = builder.indexSort;
+		this.mergeScheduler = builder.mergeScheduler;
+		this.maxMergeThreads = builder.maxMergeThreads;
+		this.maxMergeCount = builder.maxMergeCount;
+		this.mergeAutoIoThrottle = builder.mergeAutoIoThrottle;
+		this.mergeMaxMbPerSec = builder.mergeMaxMbPerSec;
+		this.insertMode = builder.insertMode;
+		this.maxConcurrentSearches = builder.maxConcurrentSearches;
+		this.maxConcurrentWrites = builder.maxConcurrentWrites;
+		this.maxQueuedRequests = builder.maxQueuedRequests;
+		this.maxQueueTimeMs = builder.maxQueueTimeMs;
+		this.warmUpQueries = builder.warmUpQueries;
+		this.warmUpRecentQueries = builder.warmUpRecentQueries;
+		this.warmUpTimeBudgetMs = builder.warmUpTimeBudgetMs;
+		this.queryCacheMaxQueries = builder.queryCacheMaxQueries;
+		this.queryCacheMaxRamMb = builder.queryCacheMaxRamMb;
+		this.queryCacheMinSegmentDocs = builder.queryCacheMinSegmentDocs;
+		this.queryCacheMinFrequency = builder.queryCacheMinFrequency;
+		this.resultCacheMaxEntries = builder.resultCacheMaxEntries;
+		this.resultCacheMaxRamMb = builder.resultCacheMaxRamMb;
+		this.queryPlanCacheSize = builder.queryPlanCacheSize;
+		this.taxonomyWriterCache = builder.taxonomyWriterCache;
+		this.taxonomyWriterCacheSize = builder.taxonomyWriterCacheSize;
+		this.taxonomyFrontCacheSize = builder.taxonomyFrontCacheSize;
 	}
 
 	final static IndexSettingsDefinition EMPTY = new IndexSettingsDefinition();
@@ -104,9 +277,82 @@ public class IndexSettingsDefinition {
 			return false;
 		if (!Objects.equals(segmentsPerTier, s.segmentsPerTier))
 			return false;
+		if (!Objects.equals(commitIntervalMs, s.commitIntervalMs))
+			return false;
+		if (!Objects.equals(commitMaxPendingDocs, s.commitMaxPendingDocs))
+			return false;
+		if (!Objects.equals(commitMaxPendingBytes, s.commitMaxPendingBytes))
+			return false;
+		if (!Objects.equals(nrtMinStaleMs, s.nrtMinStaleMs))
+			return false;
+		if (!Objects.equals(nrtMaxStaleMs, s.nrtMaxStaleMs))
+			return false;
+		if (!Objects.equals(translog, s.translog))
+			return false;
+		if (!Objects.equals(indexSort, s.indexSort))
+			return false;
+		if (!Objects.equals(mergeScheduler, s.mergeScheduler))
+			return false;
+		if (!Objects.equals(maxMergeThreads, s.maxMergeThreads))
+			return false;
+		if (!Objects.equals(maxMergeCount, s.maxMergeCount))
+			return false;
+		if (!Objects.equals(mergeAutoIoThrottle, s.mergeAutoIoThrottle))
+			return false;
+		if (!Objects.equals(mergeMaxMbPerSec, s.mergeMaxMbPerSec))
+			return false;
+		if (!Objects.equals(insertMode, s.insertMode))
+			return false;
+		if (!Objects.equals(maxConcurrentSearches, s.maxConcurrentSearches))
+			return false;
+		if (!Objects.equals(maxConcurrentWrites, s.maxConcurrentWrites))
+			return false;
+		if (!Objects.equals(maxQueuedRequests, s.maxQueuedRequests))
+			return false;
+		if (!Objects.equals(maxQueueTimeMs, s.maxQueueTimeMs))
+			return false;
+		if (!Objects.equals(toJson(warmUpQueries), toJson(s.warmUpQueries)))
+			return false;
+		if (!Objects.equals(warmUpRecentQueries, s.warmUpRecentQueries))
+			return false;
+		if (!Objects.equals(warmUpTimeBudgetMs, s.warmUpTimeBudgetMs))
+			return false;
+		if (!Objects.equals(queryCacheMaxQueries, s.queryCacheMaxQueries))
+			return false;
+		if (!Objects.equals(queryCacheMaxRamMb, s.queryCacheMaxRamMb))
+			return false;
+		if (!Objects.equals(queryCacheMinSegmentDocs, s.queryCacheMinSegmentDocs))
+			return false;
+		if (!Objects.equals(queryCacheMinFrequency, s.queryCacheMinFrequency))
+			return false;
+		if (!Objects.equals(resultCacheMaxEntries, s.resultCacheMaxEntries))
+			return false;
+		if (!Objects.equals(resultCacheMaxRamMb, s.resultCacheMaxRamMb))
+			return false;
+		if (!Objects.equals(queryPlanCacheSize, s.queryPlanCacheSize))
+			return false;
+		if (!Objects.equals(taxonomyWriterCache, s.taxonomyWriterCache))
+			return false;
+		if (!Objects.equals(taxonomyWriterCacheSize, s.taxonomyWriterCacheSize))
+			return false;
+		if (!Objects.equals(taxonomyFrontCacheSize, s.taxonomyFrontCacheSize))
+			return false;
 		return true;
 	}
 
+	/**
+	 * QueryDefinition does not implement equals, the queries are compared using their JSON form
+	 */
+	private static String toJson(final List<QueryDefinition> queries) {
+		if (queries == null || queries.isEmpty())
+			return null;
+		try {
+			return JsonMapper.MAPPER.writeValueAsString(queries);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
 	public static Builder of(final Index index) throws URISyntaxException {
 		return new Builder(index);
 	}
@@ -128,6 +374,36 @@ public class IndexSettingsDefinition {
 		private Integer maxMergeAtOnce;
 		private Double maxMergedSegmentMB;
 		private Double segmentsPerTier;
+		private Long commitIntervalMs;
+		private Integer commitMaxPendingDocs;
+		private Long commitMaxPendingBytes;
+		private Long nrtMinStaleMs;
+		private Long nrtMaxStaleMs;
+		private Boolean translog;
+		private LinkedHashMap<String, QueryDefinition.SortEnum> indexSort;
+		private MergeScheduler mergeScheduler;
+		private Integer maxMergeThreads;
+		private Integer maxMergeCount;
+		private Boolean mergeAutoIoThrottle;
+		private Double mergeMaxMbPerSec;
+		private InsertMode insertMode;
+		private Integer maxConcurrentSearches;
+		private Integer maxConcurrentWrites;
+		private Integer maxQueuedRequests;
+		private Long maxQueueTimeMs;
+		private List<QueryDefinition> warmUpQueries;
+		private Integer warmUpRecentQueries;
+		private Long warmUpTimeBudgetMs;
+		private Integer queryCacheMaxQueries;
+		private Double queryCacheMaxRamMb;
+		private Integer queryCacheMinSegmentDocs;
+		private Integer queryCacheMinFrequency;
+		private Integer resultCacheMaxEntries;
+		private Double resultCacheMaxRamMb;
+		private Integer queryPlanCacheSize;
+		private TaxonomyWriterCache taxonomyWriterCache;
+		private Integer taxonomyWriterCacheSize;
+		private Integer taxonomyFrontCacheSize;
 
 		private Builder() {
 		}
@@ -150,6 +426,36 @@ public class IndexSettingsDefinition {
 			this.maxMergeAtOnce = settings.maxMergeAtOnce;
 			this.maxMergedSegmentMB = settings.maxMergedSegmentMB;
 			this.segmentsPerTier = settings.segmentsPerTier;
+			this.commitIntervalMs = settings.commitIntervalMs;
+			this.commitMaxPendingDocs = settings.commitMaxPendingDocs;
+			this.commitMaxPendingBytes = settings.commitMaxPendingBytes;
+			this.nrtMinStaleMs = settings.nrtMinStaleMs;
+			this.nrtMaxStaleMs = settings.nrtMaxStaleMs;
+			this.translog = settings.translog;
+			this.indexSort = settings.indexSort == null ? null : new LinkedHashMap<>(settings.indexSort);
+			this.mergeScheduler = settings.mergeScheduler;
+			this.maxMergeThreads = settings.maxMergeThreads;
+			this.maxMergeCount = settings.maxMergeCount;
+			this.mergeAutoIoThrottle = settings.mergeAutoIoThrottle;
+			this.mergeMaxMbPerSec = settings.mergeMaxMbPerSec;
+			this.insertMode = settings.insertMode;
+			this.maxConcurrentSearches = settings.maxConcurrentSearches;
+			this.maxConcurrentWrites = settings.maxConcurrentWrites;
+			this.maxQueuedRequests = settings.maxQueuedRequests;
+			this.maxQueueTimeMs = settings.maxQueueTimeMs;
+			this.warmUpQueries = settings.warmUpQueries == null ? null : new ArrayList<>(settings.warmUpQueries);
+			this.warmUpRecentQueries = settings.warmUpRecentQueries;
+			this.warmUpTimeBudgetMs = settings.warmUpTimeBudgetMs;
+			this.queryCacheMaxQueries = settings.queryCacheMaxQueries;
+			this.queryCacheMaxRamMb = settings.queryCacheMaxRamMb;
+			this.queryCacheMinSegmentDocs = settings.queryCacheMinSegmentDocs;
+			this.queryCacheMinFrequency = settings.queryCacheMinFrequency;
+			this.resultCacheMaxEntries = settings.resultCacheMaxEntries;
+			this.resultCacheMaxRamMb = settings.resultCacheMaxRamMb;
+			this.queryPlanCacheSize = settings.queryPlanCacheSize;
+			this.taxonomyWriterCache = settings.taxonomyWriterCache;
+			this.taxonomyWriterCacheSize = settings.taxonomyWriterCacheSize;
+			this.taxonomyFrontCacheSize = settings.taxonomyFrontCacheSize;
 		}
 
 		public Builder type(final Type directoryType) {
@@ -198,6 +504,170 @@ public class IndexSettingsDefinition {
 			return this;
 		}
 
+		public Builder commitIntervalMs(final Long commitIntervalMs) {
+			this.commitIntervalMs = commitIntervalMs;
+			return this;
+		}
+
+		public Builder commitMaxPendingDocs(final Integer commitMaxPendingDocs) {
+			this.commitMaxPendingDocs = commitMaxPendingDocs;
+			return this;
+		}
+
+		public Builder commitMaxPendingBytes(final Long commitMaxPendingBytes) {
+			this.commitMaxPendingBytes = commitMaxPendingBytes;
+			return this;
+		}
+
+		public Builder nrtMinStaleMs(final Long nrtMinStaleMs) {
+			this.nrtMinStaleMs = nrtMinStaleMs;
+			return this;
+		}
+
+		public Builder nrtMaxStaleMs(final Long nrtMaxStaleMs) {
+			this.nrtMaxStaleMs = nrtMaxStaleMs;
+			return this;
+		}
+
+		public Builder translog(final Boolean translog) {
+			this.translog = translog;
+			return this;
+		}
+
+		public Builder indexSort(final LinkedHashMap<String, QueryDefinition.SortEnum> indexSort) {
+			this.indexSort = indexSort;
+			return this;
+		}
+
+		public Builder indexSort(final String field, final QueryDefinition.SortEnum sortEnum) {
+			if (indexSort == null)
+				indexSort = new LinkedHashMap<>();
+			indexSort.put(field, sortEnum);
+			return this;
+		}
+
+		public Builder mergeScheduler(final MergeScheduler mergeScheduler) {
+			this.mergeScheduler = mergeScheduler;
+			return this;
+		}
+
+		public Builder maxMergeThreads(final Integer maxMergeThreads) {
+			this.maxMergeThreads = maxMergeThreads;
+			return this;
+		}
+
+		public Builder maxMergeCount(final Integer maxMergeCount) {
+			this.maxMergeCount = maxMergeCount;
+			return this;
+		}
+
+		public Builder mergeAutoIoThrottle(final Boolean mergeAutoIoThrottle) {
+			this.mergeAutoIoThrottle = mergeAutoIoThrottle;
+			return this;
+		}
+
+		public Builder mergeMaxMbPerSec(final Double mergeMaxMbPerSec) {
+			this.mergeMaxMbPerSec = mergeMaxMbPerSec;
+			return this;
+		}
+
+		public Builder insertMode(final InsertMode insertMode) {
+			this.insertMode = insertMode;
+			return this;
+		}
+
+		public Builder maxConcurrentSearches(final Integer maxConcurrentSearches) {
+			this.maxConcurrentSearches = maxConcurrentSearches;
+			return this;
+		}
+
+		public Builder maxConcurrentWrites(final Integer maxConcurrentWrites) {
+			this.maxConcurrentWrites = maxConcurrentWrites;
+			return this;
+		}
+
+		public Builder maxQueuedRequests(final Integer maxQueuedRequests) {
+			this.maxQueuedRequests = maxQueuedRequests;
+			return this;
+		}
+
+		public Builder maxQueueTimeMs(final Long maxQueueTimeMs) {
+			this.maxQueueTimeMs = maxQueueTimeMs;
+			return this;
+		}
+
+		public Builder warmUpQueries(final List<QueryDefinition> warmUpQueries) {
+			this.warmUpQueries = warmUpQueries;
+			return this;
+		}
+
+		public Builder warmUpQuery(final QueryDefinition warmUpQuery) {
+			if (warmUpQueries == null)
+				warmUpQueries = new ArrayList<>();
+			warmUpQueries.add(warmUpQuery);
+			return this;
+		}
+
+		public Builder warmUpRecentQueries(final Integer warmUpRecentQueries) {
+			this.warmUpRecentQueries = warmUpRecentQueries;
+			return this;
+		}
+
+		public Builder warmUpTimeBudgetMs(final Long warmUpTimeBudgetMs) {
+			this.warmUpTimeBudgetMs = warmUpTimeBudgetMs;
+			return this;
+		}
+
+		public Builder queryCacheMaxQueries(final Integer queryCacheMaxQueries) {
+			this.queryCacheMaxQueries = queryCacheMaxQueries;
+			return this;
+		}
+
+		public Builder queryCacheMaxRamMb(final Double queryCacheMaxRamMb) {
+			this.queryCacheMaxRamMb = queryCacheMaxRamMb;
+			return this;
+		}
+
+		public Builder queryCacheMinSegmentDocs(final Integer queryCacheMinSegmentDocs) {
+			this.queryCacheMinSegmentDocs = queryCacheMinSegmentDocs;
+			return this;
+		}
+
+		public Builder queryCacheMinFrequency(final Integer queryCacheMinFrequency) {
+			this.queryCacheMinFrequency = queryCacheMinFrequency;
+			return this;
+		}
+
+		public Builder resultCacheMaxEntries(final Integer resultCacheMaxEntries) {
+			this.resultCacheMaxEntries = resultCacheMaxEntries;
+			return this;
+		}
+
+		public Builder resultCacheMaxRamMb(final Double resultCacheMaxRamMb) {
+			this.resultCacheMaxRamMb = resultCacheMaxRamMb;
+			return this;
+		}
+
+		public Builder queryPlanCacheSize(final Integer queryPlanCacheSize) {
+			this.queryPlanCacheSize = queryPlanCacheSize;
+			return this;
+		}
+
+		public Builder taxonomyWriterCache(final TaxonomyWriterCache taxonomyWriterCache) {
+			this.taxonomyWriterCache = taxonomyWriterCache;
+			return this;
+		}
+
+		public Builder taxonomyWriterCacheSize(final Integer taxonomyWriterCacheSize) {
+			this.taxonomyWriterCacheSize = taxonomyWriterCacheSize;
+			return this;
+		}
+
+		public Builder taxonomyFrontCacheSize(final Integer taxonomyFrontCacheSize) {
+			this.taxonomyFrontCacheSize = taxonomyFrontCacheSize;
+			return this;
+		}
+
 		public IndexSettingsDefinition build() {
 			return new IndexSettingsDefinition(this);
 		}
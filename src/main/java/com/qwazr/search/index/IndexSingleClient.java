@@ -266,6 +266,14 @@ public class IndexSingleClient extends JsonClientAbstract implements IndexServic
 		return executeJson(request, null, null, IndexStatus.class, valid200Json);
 	}
 
+	@Override
+	public Long getSequenceNumber(final String schema_name, final String index_name) {
+		final UBuilder uriBuilder =
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/seq_no");
+		final HttpRequest request = HttpRequest.Get(uriBuilder.buildNoEx());
+		return executeJson(request, null, null, Long.class, valid200Json);
+	}
+
 	@Override
 	public IndexCheckStatus checkIndex(String schema_name, String index_name) {
 		final UBuilder uriBuilder =
@@ -385,36 +393,60 @@ public class IndexSingleClient extends JsonClientAbstract implements IndexServic
 
 	@Override
 	public Integer postMappedDocument(final String schema_name, final String index_name,
-			final Map<String, Object> document) {
+			final Map<String, Object> document, final Boolean wait_for_commit) {
 		final UBuilder uriBuilder =
-				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/doc");
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/doc")
+						.setParameterObject("wait_for_commit", wait_for_commit);
 		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
 		return executeJson(request, document, null, Integer.class, valid200Json);
 	}
 
 	@Override
 	public Integer postMappedDocuments(final String schema_name, final String index_name,
-			final Collection<Map<String, Object>> documents) {
+			final Collection<Map<String, Object>> documents, final Boolean wait_for_commit) {
 		final UBuilder uriBuilder =
-				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs");
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs")
+						.setParameterObject("wait_for_commit", wait_for_commit);
 		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
 		return executeJson(request, documents, null, Integer.class, valid200Json);
 	}
 
+	@Override
+	public PostStreamStatus postMappedDocuments(final String schema_name, final String index_name,
+			final InputStream inputStream, final Boolean wait_for_commit) {
+		final UBuilder uriBuilder =
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs/stream")
+						.setParameterObject("wait_for_commit", wait_for_commit);
+		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
+		return executeJson(request, inputStream, null, PostStreamStatus.class, valid200Json);
+	}
+
+	@Override
+	public PostStreamStatus bulkBuildMappedDocuments(final String schema_name, final String index_name,
+			final InputStream inputStream, final Integer threads) {
+		final UBuilder uriBuilder =
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs/bulk")
+						.setParameterObject("threads", threads);
+		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
+		return executeJson(request, inputStream, null, PostStreamStatus.class, valid200Json);
+	}
+
 	@Override
 	public Integer updateMappedDocValues(final String schema_name, final String index_name,
-			final Map<String, Object> document) {
+			final Map<String, Object> document, final Boolean wait_for_commit) {
 		final UBuilder uriBuilder =
-				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/doc/values");
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/doc/values")
+						.setParameterObject("wait_for_commit", wait_for_commit);
 		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
 		return executeJson(request, document, null, Integer.class, valid200Json);
 	}
 
 	@Override
 	public Integer updateMappedDocsValues(final String schema_name, final String index_name,
-			final Collection<Map<String, Object>> documents) {
+			final Collection<Map<String, Object>> documents, final Boolean wait_for_commit) {
 		final UBuilder uriBuilder =
-				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs/values");
+				RemoteService.getNewUBuilder(remote, PATH_SLASH, schema_name, "/", index_name, "/docs/values")
+						.setParameterObject("wait_for_commit", wait_for_commit);
 		final HttpRequest request = HttpRequest.Post(uriBuilder.buildNoEx());
 		return executeJson(request, documents, null, Integer.class, valid200Json);
 	}
@@ -29,17 +29,21 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -47,6 +51,8 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public class IndexStatus {
@@ -69,11 +75,25 @@ public class IndexStatus {
 	final public Integer number_of_segment;
 	final public List<SegmentInfoStatus> segment_infos;
 	final public MergePolicyStatus merge_policy;
+	final public TaxonomyCacheStatus taxonomy_cache;
+	final public Map<String, AdmissionStatus> admission;
+	final public WarmUpStatus warm_up;
+	final public QueryCacheStatus query_cache;
+	final public ResultCacheStatus result_cache;
+	final public QueryPlanCacheStatus plan_cache;
+	final public Map<String, ExecutorStatus> executors;
 
 	public IndexStatus() {
 		num_docs = null;
 		num_deleted_docs = null;
 		merge_policy = null;
+		taxonomy_cache = null;
+		admission = null;
+		warm_up = null;
+		query_cache = null;
+		result_cache = null;
+		plan_cache = null;
+		executors = null;
 		has_pending_merges = null;
 		has_uncommitted_changes = null;
 		snapshot_deletion_count = null;
@@ -94,7 +114,10 @@ public class IndexStatus {
 	public IndexStatus(final UUID indexUuid, final UUID masterUuid, final Directory directory,
 			final IndexReader indexReader, final IndexWriter indexWriter,
 			final SnapshotDeletionPolicy snapshotDeletionPolicy, final IndexSettingsDefinition settings,
-			final Set<String> analyzers, final Set<String> fields) throws IOException {
+			final Set<String> analyzers, final Set<String> fields, final TaxonomyCacheStatus taxonomyCache,
+			final Map<String, AdmissionStatus> admission, final WarmUpStatus warmUp, final LRUQueryCache queryCache,
+			final ResultCacheStatus resultCache, final QueryPlanCacheStatus planCache,
+			final Map<String, ExecutorStatus> executors) throws IOException {
 		num_docs = (long) indexReader.numDocs();
 		num_deleted_docs = (long) indexReader.numDeletedDocs();
 		field_infos = new TreeMap<>();
@@ -108,7 +131,7 @@ public class IndexStatus {
 		} else {
 			final LiveIndexWriterConfig config = indexWriter.getConfig();
 			final MergePolicy mergePolicy = config.getMergePolicy();
-			merge_policy = mergePolicy == null ? null : new MergePolicyStatus(mergePolicy);
+			merge_policy = mergePolicy == null ? null : new MergePolicyStatus(mergePolicy, config.getMergeScheduler());
 			has_pending_merges = indexWriter.hasPendingMerges();
 			has_uncommitted_changes = indexWriter.hasUncommittedChanges();
 			has_deletions = indexWriter.hasDeletions();
@@ -130,6 +153,13 @@ public class IndexStatus {
 		this.settings = settings;
 		this.analyzers = analyzers;
 		this.fields = fields;
+		this.taxonomy_cache = taxonomyCache;
+		this.admission = admission;
+		this.warm_up = warmUp;
+		this.query_cache = queryCache == null ? null : new QueryCacheStatus(queryCache);
+		this.result_cache = resultCache;
+		this.plan_cache = planCache;
+		this.executors = executors;
 
 		final SegmentInfos segmentInfos = directory != null && directory instanceof FSDirectory ?
 				version == 1 ? null : SegmentInfos.readLatestCommit(directory) :
@@ -197,6 +227,15 @@ public class IndexStatus {
 		final public Double max_merged_segment_mb;
 		final public Double segments_per_tier;
 
+		final public String merge_scheduler;
+
+		//ConcurrentMergeScheduler
+		final public Integer max_merge_threads;
+		final public Integer max_merge_count;
+		final public Integer running_merges;
+		final public Boolean auto_io_throttle;
+		final public Double io_rate_limit_mb_per_sec;
+
 		public MergePolicyStatus() {
 			type = null;
 			max_cfs_segment_size_mb = null;
@@ -205,9 +244,16 @@ public class IndexStatus {
 			max_merge_at_once = null;
 			max_merged_segment_mb = null;
 			segments_per_tier = null;
+
+			merge_scheduler = null;
+			max_merge_threads = null;
+			max_merge_count = null;
+			running_merges = null;
+			auto_io_throttle = null;
+			io_rate_limit_mb_per_sec = null;
 		}
 
-		MergePolicyStatus(final MergePolicy mergePolicy) {
+		MergePolicyStatus(final MergePolicy mergePolicy, final MergeScheduler mergeScheduler) {
 			type = mergePolicy.getClass().getTypeName();
 			max_cfs_segment_size_mb = mergePolicy.getMaxCFSSegmentSizeMB();
 			no_cfs_ratio = mergePolicy.getNoCFSRatio();
@@ -221,6 +267,234 @@ public class IndexStatus {
 				max_merged_segment_mb = null;
 				segments_per_tier = null;
 			}
+			merge_scheduler = mergeScheduler == null ? null : mergeScheduler.getClass().getTypeName();
+			if (mergeScheduler instanceof ConcurrentMergeScheduler) {
+				final ConcurrentMergeScheduler cms = (ConcurrentMergeScheduler) mergeScheduler;
+				max_merge_threads = cms.getMaxThreadCount();
+				max_merge_count = cms.getMaxMergeCount();
+				running_merges = cms.mergeThreadCount();
+				auto_io_throttle = cms.getAutoIOThrottle();
+				final double rate = cms.getIORateLimitMBPerSec();
+				io_rate_limit_mb_per_sec = Double.isInfinite(rate) ? null : rate;
+			} else {
+				max_merge_threads = null;
+				max_merge_count = null;
+				running_merges = null;
+				auto_io_throttle = null;
+				io_rate_limit_mb_per_sec = null;
+			}
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class TaxonomyCacheStatus {
+
+		final public String type;
+		final public Integer front_cache_size;
+		final public Integer front_cache_entries;
+		final public Long hits;
+		final public Long misses;
+
+		public TaxonomyCacheStatus() {
+			type = null;
+			front_cache_size = null;
+			front_cache_entries = null;
+			hits = null;
+			misses = null;
+		}
+
+		TaxonomyCacheStatus(final String type, final int frontCacheSize, final int frontCacheEntries, final long hits,
+				final long misses) {
+			this.type = type;
+			this.front_cache_size = frontCacheSize;
+			this.front_cache_entries = frontCacheEntries;
+			this.hits = hits;
+			this.misses = misses;
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class AdmissionStatus {
+
+		final public Integer max_concurrent;
+		final public Integer active;
+		final public Integer queued;
+		final public Long admitted;
+		final public Long rejected;
+		final public LinkedHashMap<String, Long> wait_time_ms;
+
+		public AdmissionStatus() {
+			max_concurrent = null;
+			active = null;
+			queued = null;
+			admitted = null;
+			rejected = null;
+			wait_time_ms = null;
+		}
+
+		AdmissionStatus(final Integer maxConcurrent, final int active, final int queued, final long admitted,
+				final long rejected, final LinkedHashMap<String, Long> waitTimeMs) {
+			this.max_concurrent = maxConcurrent;
+			this.active = active;
+			this.queued = queued;
+			this.admitted = admitted;
+			this.rejected = rejected;
+			this.wait_time_ms = waitTimeMs;
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class WarmUpStatus {
+
+		final public Long warm_ups;
+		final public Long queries;
+		final public Long timeouts;
+		final public Long last_duration_ms;
+		final public Long total_duration_ms;
+		final public Integer recent_queries;
+
+		public WarmUpStatus() {
+			warm_ups = null;
+			queries = null;
+			timeouts = null;
+			last_duration_ms = null;
+			total_duration_ms = null;
+			recent_queries = null;
+		}
+
+		WarmUpStatus(final long warmUps, final long queries, final long timeouts, final long lastDurationMs,
+				final long totalDurationMs, final int recentQueries) {
+			this.warm_ups = warmUps;
+			this.queries = queries;
+			this.timeouts = timeouts;
+			this.last_duration_ms = lastDurationMs;
+			this.total_duration_ms = totalDurationMs;
+			this.recent_queries = recentQueries;
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class QueryCacheStatus {
+
+		final public Long cache_size;
+		final public Long cache_count;
+		final public Long hit_count;
+		final public Long miss_count;
+		final public Long eviction_count;
+		final public Long ram_bytes_used;
+
+		public QueryCacheStatus() {
+			cache_size = null;
+			cache_count = null;
+			hit_count = null;
+			miss_count = null;
+			eviction_count = null;
+			ram_bytes_used = null;
+		}
+
+		QueryCacheStatus(final LRUQueryCache queryCache) {
+			cache_size = queryCache.getCacheSize();
+			cache_count = queryCache.getCacheCount();
+			hit_count = queryCache.getHitCount();
+			miss_count = queryCache.getMissCount();
+			eviction_count = queryCache.getEvictionCount();
+			ram_bytes_used = queryCache.ramBytesUsed();
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class ResultCacheStatus {
+
+		final public Integer entries;
+		final public Long ram_bytes_used;
+		final public Long hit_count;
+		final public Long miss_count;
+		final public Long eviction_count;
+		final public Long invalidation_count;
+
+		public ResultCacheStatus() {
+			entries = null;
+			ram_bytes_used = null;
+			hit_count = null;
+			miss_count = null;
+			eviction_count = null;
+			invalidation_count = null;
+		}
+
+		ResultCacheStatus(final int entries, final long ramBytesUsed, final long hitCount, final long missCount,
+				final long evictionCount, final long invalidationCount) {
+			this.entries = entries;
+			this.ram_bytes_used = ramBytesUsed;
+			this.hit_count = hitCount;
+			this.miss_count = missCount;
+			this.eviction_count = evictionCount;
+			this.invalidation_count = invalidationCount;
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class QueryPlanCacheStatus {
+
+		final public Integer entries;
+		final public Long hit_count;
+		final public Long miss_count;
+		final public Long invalidation_count;
+
+		public QueryPlanCacheStatus() {
+			entries = null;
+			hit_count = null;
+			miss_count = null;
+			invalidation_count = null;
+		}
+
+		QueryPlanCacheStatus(final int entries, final long hitCount, final long missCount,
+				final long invalidationCount) {
+			this.entries = entries;
+			this.hit_count = hitCount;
+			this.miss_count = missCount;
+			this.invalidation_count = invalidationCount;
+		}
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class ExecutorStatus {
+
+		final public Integer pool_size;
+		final public Integer active_threads;
+		final public Integer max_threads;
+		final public Integer largest_pool_size;
+		final public Long queued_tasks;
+		final public Long completed_tasks;
+		final public Long steal_count;
+
+		public ExecutorStatus() {
+			pool_size = null;
+			active_threads = null;
+			max_threads = null;
+			largest_pool_size = null;
+			queued_tasks = null;
+			completed_tasks = null;
+			steal_count = null;
+		}
+
+		ExecutorStatus(final ThreadPoolExecutor executor) {
+			pool_size = executor.getPoolSize();
+			active_threads = executor.getActiveCount();
+			max_threads = executor.getMaximumPoolSize() == Integer.MAX_VALUE ? null : executor.getMaximumPoolSize();
+			largest_pool_size = executor.getLargestPoolSize();
+			queued_tasks = (long) executor.getQueue().size();
+			completed_tasks = executor.getCompletedTaskCount();
+			steal_count = null;
+		}
+
+		ExecutorStatus(final ForkJoinPool pool) {
+			pool_size = pool.getPoolSize();
+			active_threads = pool.getActiveThreadCount();
+			max_threads = pool.getParallelism();
+			largest_pool_size = null;
+			queued_tasks = pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+			completed_tasks = null;
+			steal_count = pool.getStealCount();
 		}
 	}
 
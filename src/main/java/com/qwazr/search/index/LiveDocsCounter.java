@@ -0,0 +1,94 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free count of the documents of an index: the live documents of the last refreshed searcher, plus the
+ * documents posted since. The count is an upper bound, a document replacing an existing one is counted twice
+ * until the next refresh.
+ */
+class LiveDocsCounter implements ReferenceManager.RefreshListener {
+
+	private final SearcherTaxonomyManager searcherTaxonomyManager;
+	private final LongAdder pendingDocs;
+	private volatile long liveDocs;
+
+	// Only accessed by the refreshing thread, under the refresh lock of the manager
+	private long refreshedPendingDocs;
+
+	LiveDocsCounter(final SearcherTaxonomyManager searcherTaxonomyManager) throws IOException {
+		this.searcherTaxonomyManager = searcherTaxonomyManager;
+		this.pendingDocs = new LongAdder();
+		this.liveDocs = readLiveDocs();
+		searcherTaxonomyManager.addListener(this);
+	}
+
+	private long readLiveDocs() throws IOException {
+		final SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy = searcherTaxonomyManager.acquire();
+		try {
+			return searcherAndTaxonomy.searcher.getIndexReader().numDocs();
+		} finally {
+			searcherTaxonomyManager.release(searcherAndTaxonomy);
+		}
+	}
+
+	/**
+	 * Register documents which have been written to the IndexWriter
+	 *
+	 * @param docs the number of documents
+	 */
+	void add(final int docs) {
+		pendingDocs.add(docs);
+	}
+
+	/**
+	 * @return the number of live documents plus the number of documents written since the last refresh
+	 */
+	long get() {
+		return liveDocs + pendingDocs.sum();
+	}
+
+	/**
+	 * Refresh the searcher: the documents written so far are counted by the live documents of the new reader.
+	 *
+	 * @return the number of live documents plus the number of documents written during the refresh
+	 * @throws IOException if the refresh failed
+	 */
+	long getRefreshed() throws IOException {
+		searcherTaxonomyManager.maybeRefreshBlocking();
+		return get();
+	}
+
+	@Override
+	public void beforeRefresh() {
+		// The documents registered so far are written before the new reader is opened
+		refreshedPendingDocs = pendingDocs.sum();
+	}
+
+	@Override
+	public void afterRefresh(final boolean didRefresh) throws IOException {
+		if (!didRefresh)
+			return;
+		liveDocs = readLiveDocs();
+		pendingDocs.add(-refreshedPendingDocs);
+	}
+}
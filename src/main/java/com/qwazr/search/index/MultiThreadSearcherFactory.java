@@ -17,6 +17,8 @@ package com.qwazr.search.index;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.QueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.SearcherFactory;
 
 import java.io.IOException;
@@ -24,13 +26,68 @@ import java.util.concurrent.ExecutorService;
 
 class MultiThreadSearcherFactory extends SearcherFactory {
 
+	interface Warmer {
+		void warm(IndexSearcher searcher) throws IOException;
+	}
+
+	/**
+	 * Below this number of documents, the segments are searched by the calling thread:
+	 * the cost of the tasks would exceed the gain of the parallelism
+	 */
+	final static int MIN_PARALLEL_DOCS = 10000;
+
 	private final ExecutorService executorService;
+	private final QueryCache queryCache;
+	private final QueryCachingPolicy queryCachingPolicy;
+	private volatile Warmer warmer;
 
-	MultiThreadSearcherFactory(final ExecutorService executorService) {
+	/**
+	 * @param executorService    the executor searching the segments
+	 * @param queryCache         the query cache of the index, or null for the default cache
+	 * @param queryCachingPolicy the caching policy of the index, or null for the default policy
+	 */
+	MultiThreadSearcherFactory(final ExecutorService executorService, final QueryCache queryCache,
+			final QueryCachingPolicy queryCachingPolicy) {
 		this.executorService = executorService;
+		this.queryCache = queryCache;
+		this.queryCachingPolicy = queryCachingPolicy;
+	}
+
+	/**
+	 * @param warmer called with each new searcher, before it is published
+	 */
+	void setWarmer(final Warmer warmer) {
+		this.warmer = warmer;
 	}
 
 	public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+		final IndexSearcher indexSearcher = setCaches(buildSearcher(reader));
+		final Warmer currentWarmer = warmer;
+		if (currentWarmer != null)
+			currentWarmer.warm(indexSearcher);
+		return indexSearcher;
+	}
+
+	/**
+	 * @param reader   the reader to search
+	 * @param deadline the time (in milliseconds) after which the collection is stopped
+	 * @return a searcher using the caches of the index, used to warm a new searcher
+	 */
+	IndexSearcher newDeadlineSearcher(final IndexReader reader, final long deadline) {
+		return setCaches(new SearcherWarmer.DeadlineSearcher(reader, deadline));
+	}
+
+	private IndexSearcher setCaches(final IndexSearcher indexSearcher) {
+		if (queryCache != null)
+			indexSearcher.setQueryCache(queryCache);
+		if (queryCachingPolicy != null)
+			indexSearcher.setQueryCachingPolicy(queryCachingPolicy);
+		return indexSearcher;
+	}
+
+	private IndexSearcher buildSearcher(final IndexReader reader) {
+		if (reader.leaves().size() <= 1 || reader.maxDoc() < MIN_PARALLEL_DOCS)
+			return new IndexSearcher(reader);
 		return new IndexSearcher(reader, executorService);
 	}
 }
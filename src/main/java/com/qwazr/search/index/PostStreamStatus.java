@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class PostStreamStatus {
+
+	final static int MAX_REPORTED_ERRORS = 1000;
+
+	final public Integer count;
+	final public Integer lines;
+	final public Integer error_count;
+	final public List<LineError> errors;
+
+	public PostStreamStatus() {
+		count = null;
+		lines = null;
+		error_count = null;
+		errors = null;
+	}
+
+	private PostStreamStatus(final Builder builder) {
+		count = builder.count;
+		lines = builder.lines;
+		error_count = builder.errorCount;
+		errors = builder.errors;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class LineError {
+
+		final public Integer line;
+		final public String message;
+
+		public LineError() {
+			line = null;
+			message = null;
+		}
+
+		LineError(final int line, final String message) {
+			this.line = line;
+			this.message = message;
+		}
+	}
+
+	static class Builder {
+
+		private int count;
+		private int lines;
+		private int errorCount;
+		private List<LineError> errors;
+
+		Builder() {
+			count = 0;
+			lines = 0;
+			errorCount = 0;
+			errors = null;
+		}
+
+		Builder line() {
+			lines++;
+			return this;
+		}
+
+		Builder count(final int count) {
+			this.count += count;
+			return this;
+		}
+
+		int getCount() {
+			return count;
+		}
+
+		Builder error(final int line, final Exception e) {
+			errorCount++;
+			if (errorCount > MAX_REPORTED_ERRORS)
+				return this;
+			if (errors == null)
+				errors = new ArrayList<>();
+			errors.add(new LineError(line, e.getMessage() == null ? e.toString() : e.getMessage()));
+			return this;
+		}
+
+		PostStreamStatus build() {
+			return new PostStreamStatus(this);
+		}
+	}
+}
@@ -43,6 +43,12 @@ public class QueryBuilder {
 
 	AbstractQuery query = null;
 
+	Long waitForSeqNo = null;
+
+	Boolean bypassCache = null;
+
+	Integer trackTotalHits = null;
+
 	public QueryBuilder() {
 	}
 
@@ -67,6 +73,12 @@ public class QueryBuilder {
 		highlighters = queryDef.highlighters;
 
 		query = queryDef.query;
+
+		waitForSeqNo = queryDef.wait_for_seq_no;
+
+		bypassCache = queryDef.bypass_cache;
+
+		trackTotalHits = queryDef.track_total_hits;
 	}
 
 	public QueryBuilder queryDebug(final Boolean queryDebug) {
@@ -221,6 +233,21 @@ public class QueryBuilder {
 		return this;
 	}
 
+	public QueryBuilder waitForSeqNo(final Long waitForSeqNo) {
+		this.waitForSeqNo = waitForSeqNo;
+		return this;
+	}
+
+	public QueryBuilder bypassCache(final Boolean bypassCache) {
+		this.bypassCache = bypassCache;
+		return this;
+	}
+
+	public QueryBuilder trackTotalHits(final Integer trackTotalHits) {
+		this.trackTotalHits = trackTotalHits;
+		return this;
+	}
+
 	public QueryDefinition build() {
 		return new QueryDefinition(this);
 	}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qwazr.search.query.CustomScoreQuery;
+import com.qwazr.search.query.GeoPointInPolygonQuery;
+import com.qwazr.search.query.MultiFieldQueryParser;
+import com.qwazr.search.query.PayloadScoreQuery;
+import com.qwazr.search.query.SpanTermQuery;
+import com.qwazr.search.query.StandardQueryParser;
+import com.qwazr.search.query.SynonymQuery;
+import com.qwazr.search.query.TermsQuery;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Helpers shared by the caches keyed by the JSON form of the query definition.
+ */
+final class QueryCacheKeys {
+
+	/**
+	 * The queries which may keep a part of their content in fields ignored by the JSON serialization
+	 * (terms, analyzers, classes, polygons given to the Java builders).
+	 */
+	private final static Set<String> INCOMPLETE_JSON_QUERIES = new HashSet<>(
+			Arrays.asList(TermsQuery.class.getSimpleName(), StandardQueryParser.class.getSimpleName(),
+					MultiFieldQueryParser.class.getSimpleName(), SynonymQuery.class.getSimpleName(),
+					CustomScoreQuery.class.getSimpleName(), GeoPointInPolygonQuery.class.getSimpleName(),
+					PayloadScoreQuery.class.getSimpleName(), SpanTermQuery.class.getSimpleName()));
+
+	/**
+	 * @param node the JSON form of a query definition
+	 * @return true if the JSON form describes the whole query definition and can be used as a cache key
+	 */
+	static boolean isComplete(final JsonNode node) {
+		for (JsonNode type : node.findValues("query"))
+			if (type.isTextual() && INCOMPLETE_JSON_QUERIES.contains(type.asText()))
+				return false;
+		return true;
+	}
+}
@@ -96,15 +96,21 @@ class QueryCollectorManager extends QueryCollectors implements CollectorManager<
 		if (queryCollectorsList == null || queryCollectorsList.isEmpty())
 			return 0;
 		int totalHits = 0;
-		for (QueryCollectorsClassic queryCollectors : queryCollectorsList) {
-			if (queryCollectors.totalHitCountCollector != null)
-				totalHits += queryCollectors.totalHitCountCollector.getTotalHits();
-			else if (queryCollectors.topDocsCollector != null)
-				totalHits += queryCollectors.topDocsCollector.getTotalHits();
-		}
+		for (QueryCollectorsClassic queryCollectors : queryCollectorsList)
+			totalHits += queryCollectors.getTotalHits();
 		return totalHits;
 	}
 
+	@Override
+	public final boolean isTotalHitsApproximate() {
+		if (queryCollectorsList == null)
+			return false;
+		for (QueryCollectorsClassic queryCollectors : queryCollectorsList)
+			if (queryCollectors.isTotalHitsApproximate())
+				return true;
+		return false;
+	}
+
 	@Override
 	public final TopDocs getTopDocs() throws IOException {
 		if (queryCollectorsList == null || queryCollectorsList.isEmpty())
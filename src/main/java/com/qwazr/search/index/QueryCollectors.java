@@ -41,6 +41,11 @@ abstract class QueryCollectors {
 
 	abstract Integer getTotalHits();
 
+	/**
+	 * @return true if the collection has been terminated early: the total hits is then a lower bound
+	 */
+	abstract boolean isTotalHitsApproximate();
+
 	abstract TopDocs getTopDocs() throws IOException;
 
 	abstract FacetsCollector getFacetsCollector() throws IOException;
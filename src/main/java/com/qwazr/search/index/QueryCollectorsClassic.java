@@ -51,14 +51,26 @@ class QueryCollectorsClassic extends QueryCollectors {
 
 	final TopDocsCollector topDocsCollector;
 
+	final TotalHitsThresholdCollector totalHitsThresholdCollector;
+
 	final Collector finalCollector;
 
 	QueryCollectorsClassic(final QueryExecution queryExecution) throws IOException, ReflectiveOperationException {
 		super(queryExecution);
 		collectors = new ArrayList<>();
 		facetsCollector = queryExecution.useDrillSideways ? null : buildFacetsCollector(queryExecution.queryDef.facets);
-		totalHitCountCollector = buildTotalHitsCollector(queryExecution.numHits);
+		final boolean trackTotalHits = isTotalHitsThresholdApplicable();
+		totalHitCountCollector = trackTotalHits ? null : buildTotalHitsCollector(queryExecution.numHits);
 		topDocsCollector = buildTopDocCollector(queryExecution.sort, queryExecution.numHits, queryExecution.bNeedScore);
+		if (trackTotalHits) {
+			totalHitsThresholdCollector = add(new TotalHitsThresholdCollector(topDocsCollector, queryExecution.numHits,
+					queryExecution.useEarlyTermination, queryExecution.queryDef.track_total_hits,
+					queryExecution.trackedTotalHits));
+		} else {
+			totalHitsThresholdCollector = null;
+			if (topDocsCollector != null)
+				add(topDocsCollector);
+		}
 		if (queryExecution.collectorConstructors != null) {
 			userCollectors = new ArrayList<>();
 			for (Pair<Constructor, Object[]> item : queryExecution.collectorConstructors)
@@ -68,6 +80,20 @@ class QueryCollectorsClassic extends QueryCollectors {
 		finalCollector = getFinalCollector();
 	}
 
+	/**
+	 * The counting can stop at the threshold if no other collector needs every hit, and if the top documents
+	 * cannot change: only the hits are counted, every hit has the same score and the natural order is used, or the
+	 * sort is a prefix of the index sort (each segment is then terminated once it has collected its top documents).
+	 */
+	private boolean isTotalHitsThresholdApplicable() {
+		if (queryExecution.queryDef.track_total_hits == null || queryExecution.useDrillSideways)
+			return false;
+		if (facetsCollector != null || queryExecution.collectorConstructors != null)
+			return false;
+		return queryExecution.numHits == 0 || (queryExecution.sort == null && queryExecution.constantScore) ||
+				queryExecution.useEarlyTermination;
+	}
+
 	private <T extends Collector> T add(final T collector) {
 		collectors.add(collector);
 		return collector;
@@ -97,12 +123,10 @@ class QueryCollectorsClassic extends QueryCollectors {
 			throws IOException {
 		if (numHits == 0)
 			return null;
-		final TopDocsCollector topDocsCollector;
 		if (sort != null)
-			topDocsCollector = TopFieldCollector.create(sort, numHits, true, bNeedScore, bNeedScore);
+			return TopFieldCollector.create(sort, numHits, true, bNeedScore, bNeedScore);
 		else
-			topDocsCollector = TopScoreDocCollector.create(numHits);
-		return add(topDocsCollector);
+			return TopScoreDocCollector.create(numHits);
 	}
 
 	private TotalHitCountCollector buildTotalHitsCollector(final int numHits) {
@@ -142,6 +166,8 @@ class QueryCollectorsClassic extends QueryCollectors {
 
 	@Override
 	public final Integer getTotalHits() {
+		if (totalHitsThresholdCollector != null)
+			return totalHitsThresholdCollector.getTotalHits();
 		if (totalHitCountCollector != null)
 			return totalHitCountCollector.getTotalHits();
 		if (topDocsCollector != null)
@@ -149,6 +175,11 @@ class QueryCollectorsClassic extends QueryCollectors {
 		return 0;
 	}
 
+	@Override
+	public final boolean isTotalHitsApproximate() {
+		return totalHitsThresholdCollector != null && totalHitsThresholdCollector.isTerminated();
+	}
+
 	@Override
 	public final TopDocs getTopDocs() {
 		return topDocsCollector == null ? null : topDocsCollector.topDocs();
@@ -59,6 +59,12 @@ public class QueryDefinition extends BaseQueryDefinition {
 
 	final public AbstractQuery query;
 
+	final public Long wait_for_seq_no;
+
+	final public Boolean bypass_cache;
+
+	final public Integer track_total_hits;
+
 	public static class CollectorDefinition {
 
 		@JsonProperty("class")
@@ -87,6 +93,9 @@ public class QueryDefinition extends BaseQueryDefinition {
 		collectors = null;
 		highlighters = null;
 		query = null;
+		wait_for_seq_no = null;
+		bypass_cache = null;
+		track_total_hits = null;
 	}
 
 	QueryDefinition(final QueryBuilder builder) {
@@ -100,6 +109,9 @@ public class QueryDefinition extends BaseQueryDefinition {
 		collectors = builder.collectors;
 		highlighters = builder.highlighters;
 		query = builder.query;
+		wait_for_seq_no = builder.waitForSeqNo;
+		bypass_cache = builder.bypassCache;
+		track_total_hits = builder.trackTotalHits;
 	}
 
 	public static QueryDefinition newQuery(final String jsonString) throws IOException {
@@ -15,26 +15,23 @@
  **/
 package com.qwazr.search.index;
 
-import com.qwazr.classloader.ClassLoaderManager;
-import com.qwazr.search.collector.ConcurrentCollector;
-import com.qwazr.search.field.SortUtils;
-import com.qwazr.search.query.DrillDownQuery;
-import com.qwazr.utils.FunctionUtils;
+import com.qwazr.server.ServerException;
 import com.qwazr.utils.TimeTracker;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
-import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.EarlyTerminatingSortingCollector;
 import org.apache.lucene.search.Explanation;
-import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 
+import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,77 +49,58 @@ final class QueryExecution {
 	final Sort sort;
 	final boolean bNeedScore;
 	final boolean useDrillSideways;
+	final boolean useEarlyTermination;
 	final Query query;
 	final List<Pair<Constructor, Object[]>> collectorConstructors;
+	final boolean constantScore;
+	final AtomicInteger trackedTotalHits;
 
 	private final boolean isConcurrent;
 
 	QueryExecution(final QueryContext queryContext)
 			throws QueryNodeException, ReflectiveOperationException, ParseException, IOException {
+		this(queryContext, new QueryPlan(queryContext));
+	}
+
+	QueryExecution(final QueryContext queryContext, final QueryPlan queryPlan) {
 
 		this.timeTracker = new TimeTracker();
 
 		this.queryContext = queryContext;
 		this.queryDef = queryContext.queryDefinition;
 
-		this.query = queryDef.query == null ? new MatchAllDocsQuery() : queryDef.query.getQuery(queryContext);
-
-		this.sort = queryDef.sorts == null ? null : SortUtils.buildSort(queryContext.fieldMap, queryDef.sorts);
-
-		this.facetKeys = queryDef.facets == null ? null : FacetsBuilder.getFields(queryDef.facets);
-		this.facetsConfig = facetKeys == null ? null : queryContext.fieldMap.getNewFacetsConfig(facetKeys);
+		// A threshold of zero would stop the counting before the first hit
+		if (queryDef.track_total_hits != null && queryDef.track_total_hits <= 0)
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"track_total_hits must be greater than zero: " + queryDef.track_total_hits);
+
+		this.query = queryPlan.query;
+		this.sort = queryPlan.sort;
+		this.facetKeys = queryPlan.facetKeys;
+		this.facetsConfig = queryPlan.facetsConfig;
+		this.useDrillSideways = queryPlan.useDrillSideways;
+		this.collectorConstructors = queryPlan.collectorConstructors;
+		this.isConcurrent = queryPlan.isConcurrent;
+		this.constantScore = queryPlan.constantScore;
+		this.trackedTotalHits = new AtomicInteger();
 
 		this.numHits = queryDef.getEnd();
 		this.bNeedScore = sort == null || sort.needsScores();
-		this.useDrillSideways =
-				queryDef.query instanceof DrillDownQuery && ((DrillDownQuery) queryDef.query).useDrillSideways
-						&& queryDef.facets != null;
-		if (queryDef.collectors != null && !queryDef.collectors.isEmpty()) {
-			collectorConstructors = new ArrayList<>();
-			isConcurrent = buildExternalCollectors(queryContext.classLoaderManager, queryDef.collectors,
-					collectorConstructors);
-		} else {
-			collectorConstructors = null;
-			isConcurrent = true;
-		}
+		// The early termination makes the total hits approximate: the client opts in with track_total_hits
+		this.useEarlyTermination = sort != null && !useDrillSideways && queryDef.track_total_hits != null &&
+				canEarlyTerminate(sort, queryContext.indexSearcher.getIndexReader());
 	}
 
-	private static boolean buildExternalCollectors(final ClassLoaderManager classLoaderManager,
-			final Map<String, QueryDefinition.CollectorDefinition> collectors,
-			final List<Pair<Constructor, Object[]>> collectorConstructors) throws ReflectiveOperationException {
-		if (collectors == null || collectors.isEmpty())
-			return true; // By default we use concurrent
-		final AtomicInteger concurrentCollectors = new AtomicInteger(0);
-		final AtomicInteger classicCollectors = new AtomicInteger(0);
-		FunctionUtils.forEach(collectors, (name, collector) -> {
-			final Class<? extends Collector> collectorClass = classLoaderManager.findClass(collector.classname);
-			Constructor<?>[] constructors = collectorClass.getConstructors();
-			if (constructors.length == 0)
-				throw new ReflectiveOperationException("No constructor for class: " + collectorClass);
-			final Constructor<?> constructor;
-			final Object[] arguments;
-			if (collector.arguments == null || collector.arguments.length == 0) {
-				constructor = collectorClass.getConstructor(String.class);
-				arguments = new Object[] { name };
-			} else {
-				arguments = new Object[collector.arguments.length + 1];
-				arguments[0] = name;
-				System.arraycopy(collector.arguments, 0, arguments, 1, collector.arguments.length);
-				Class[] classes = new Class[arguments.length];
-				int i = 0;
-				for (Object arg : arguments)
-					classes[i++] = arg.getClass();
-				constructor = collectorClass.getConstructor(classes);
-			}
-			collectorConstructors.add(Pair.of(constructor, arguments));
-			if (ConcurrentCollector.class.isAssignableFrom(collectorClass))
-				concurrentCollectors.incrementAndGet();
-			else
-				classicCollectors.incrementAndGet();
-		});
-		if (concurrentCollectors.get() > 0 && classicCollectors.get() > 0)
-			throw new IllegalArgumentException("Cannot mix concurrent collectors and classic collectors");
-		return concurrentCollectors.get() > 0 || classicCollectors.get() == 0;
+	/**
+	 * The collection can be terminated early on each segment if the sort of the query is a prefix of the index sort
+	 */
+	private static boolean canEarlyTerminate(final Sort sort, final IndexReader indexReader) {
+		for (LeafReaderContext context : indexReader.leaves()) {
+			final Sort indexSort = context.reader().getIndexSort();
+			if (indexSort != null)
+				return EarlyTerminatingSortingCollector.canEarlyTerminate(sort, indexSort);
+		}
+		return false;
 	}
 
 	final ResultDefinition execute(final ResultDocumentBuilder.BuilderFactory documentBuilderFactory)
@@ -135,6 +113,7 @@ final class QueryExecution {
 
 		final TopDocs topDocs = queryCollectors.getTopDocs();
 		final Integer totalHits = queryCollectors.getTotalHits();
+		final boolean totalHitsApproximate = queryCollectors.isTotalHitsApproximate();
 
 		final Map<String, HighlighterImpl> highlighters;
 		if (queryDef.highlighters != null && topDocs != null) {
@@ -150,7 +129,7 @@ final class QueryExecution {
 		final ResultDefinitionBuilder resultBuilder =
 				new ResultDefinitionBuilder(queryDef, topDocs, queryContext.indexSearcher, query, highlighters,
 						queryCollectors.getExternalResults(), queryContext.fieldMap, timeTracker,
-						documentBuilderFactory, facetsBuilder, totalHits);
+						documentBuilderFactory, facetsBuilder, totalHits, totalHitsApproximate);
 
 		return documentBuilderFactory.build(resultBuilder);
 	}
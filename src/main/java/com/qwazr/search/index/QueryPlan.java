@@ -0,0 +1,140 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.classloader.ClassLoaderManager;
+import com.qwazr.search.collector.ConcurrentCollector;
+import com.qwazr.search.field.SortUtils;
+import com.qwazr.search.query.DrillDownQuery;
+import com.qwazr.utils.FunctionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The part of a query execution which only depends on the query definition (paging excluded), the fields and
+ * the analyzers: the Lucene query, the sort, the facets configuration and the external collectors.
+ * A plan is immutable and can be shared by several executions.
+ */
+final class QueryPlan {
+
+	final Query query;
+	final Sort sort;
+	final Set<String> facetKeys;
+	final FacetsConfig facetsConfig;
+	final boolean useDrillSideways;
+	final boolean constantScore;
+	final List<Pair<Constructor, Object[]>> collectorConstructors;
+	final boolean isConcurrent;
+
+	QueryPlan(final QueryContext queryContext)
+			throws QueryNodeException, ReflectiveOperationException, ParseException, IOException {
+
+		final QueryDefinition queryDef = queryContext.queryDefinition;
+
+		this.query = queryDef.query == null ? new MatchAllDocsQuery() : queryDef.query.getQuery(queryContext);
+
+		this.sort = queryDef.sorts == null ? null : SortUtils.buildSort(queryContext.fieldMap, queryDef.sorts);
+
+		this.facetKeys = queryDef.facets == null ? null : FacetsBuilder.getFields(queryDef.facets);
+		this.facetsConfig = facetKeys == null ? null : queryContext.fieldMap.getNewFacetsConfig(facetKeys);
+
+		this.useDrillSideways =
+				queryDef.query instanceof DrillDownQuery && ((DrillDownQuery) queryDef.query).useDrillSideways
+						&& queryDef.facets != null;
+		this.constantScore = isConstantScore(query);
+		if (queryDef.collectors != null && !queryDef.collectors.isEmpty()) {
+			final List<Pair<Constructor, Object[]>> constructors = new ArrayList<>();
+			isConcurrent = buildExternalCollectors(queryContext.classLoaderManager, queryDef.collectors, constructors);
+			collectorConstructors = constructors;
+		} else {
+			collectorConstructors = null;
+			isConcurrent = true;
+		}
+	}
+
+	/**
+	 * @return true if every matching document has the same score: the top documents are the first collected
+	 */
+	static boolean isConstantScore(final Query query) {
+		if (query instanceof MatchAllDocsQuery || query instanceof ConstantScoreQuery)
+			return true;
+		if (query instanceof BoostQuery)
+			return isConstantScore(((BoostQuery) query).getQuery());
+		if (query instanceof BooleanQuery) {
+			for (BooleanClause clause : ((BooleanQuery) query).clauses())
+				if (clause.isScoring())
+					return false;
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean buildExternalCollectors(final ClassLoaderManager classLoaderManager,
+			final Map<String, QueryDefinition.CollectorDefinition> collectors,
+			final List<Pair<Constructor, Object[]>> collectorConstructors) throws ReflectiveOperationException {
+		if (collectors == null || collectors.isEmpty())
+			return true; // By default we use concurrent
+		final AtomicInteger concurrentCollectors = new AtomicInteger(0);
+		final AtomicInteger classicCollectors = new AtomicInteger(0);
+		FunctionUtils.forEach(collectors, (name, collector) -> {
+			final Class<? extends Collector> collectorClass = classLoaderManager.findClass(collector.classname);
+			Constructor<?>[] constructors = collectorClass.getConstructors();
+			if (constructors.length == 0)
+				throw new ReflectiveOperationException("No constructor for class: " + collectorClass);
+			final Constructor<?> constructor;
+			final Object[] arguments;
+			if (collector.arguments == null || collector.arguments.length == 0) {
+				constructor = collectorClass.getConstructor(String.class);
+				arguments = new Object[] { name };
+			} else {
+				arguments = new Object[collector.arguments.length + 1];
+				arguments[0] = name;
+				System.arraycopy(collector.arguments, 0, arguments, 1, collector.arguments.length);
+				Class[] classes = new Class[arguments.length];
+				int i = 0;
+				for (Object arg : arguments)
+					classes[i++] = arg.getClass();
+				constructor = collectorClass.getConstructor(classes);
+			}
+			collectorConstructors.add(Pair.of(constructor, arguments));
+			if (ConcurrentCollector.class.isAssignableFrom(collectorClass))
+				concurrentCollectors.incrementAndGet();
+			else
+				classicCollectors.incrementAndGet();
+		});
+		if (concurrentCollectors.get() > 0 && classicCollectors.get() > 0)
+			throw new IllegalArgumentException("Cannot mix concurrent collectors and classic collectors");
+		return concurrentCollectors.get() > 0 || classicCollectors.get() == 0;
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.qwazr.search.query.JoinQuery;
+import com.qwazr.search.query.MoreLikeThisQuery;
+import com.qwazr.search.query.MultiFieldQuery;
+import com.qwazr.utils.json.JsonMapper;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of the query plans. The key is the JSON form of the query definition without the properties which
+ * do not change the plan (paging, returned fields, highlighters). The cache is invalidated when the fields or
+ * the analyzers change. The queries built using the index reader also use the version of the reader in the key.
+ * The queries which are not fully described by their JSON form are not cached.
+ */
+class QueryPlanCache {
+
+	private final static String[] EXECUTION_PROPERTIES =
+			{ "start", "rows", "returned_fields", "highlighters", "query_debug", "wait_for_seq_no", "bypass_cache",
+					"track_total_hits" };
+
+	private final static Set<String> READER_DEPENDENT_QUERIES = new HashSet<>(
+			Arrays.asList(MoreLikeThisQuery.class.getSimpleName(), MultiFieldQuery.class.getSimpleName()));
+
+	// Built using the reader of another index
+	private final static String JOIN_QUERY = JoinQuery.class.getSimpleName();
+
+	private final int maxEntries;
+	private final LinkedHashMap<String, QueryPlan> plans;
+	private long generation;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder invalidations;
+
+	private QueryPlanCache(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.plans = new LinkedHashMap<>(16, 0.75f, true);
+		this.generation = 0;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.invalidations = new LongAdder();
+	}
+
+	/**
+	 * @param settings the settings of the index
+	 * @return a new cache, or null if the plan cache is not enabled
+	 */
+	static QueryPlanCache of(final IndexSettingsDefinition settings) {
+		if (settings == null || settings.queryPlanCacheSize == null || settings.queryPlanCacheSize <= 0)
+			return null;
+		return new QueryPlanCache(settings.queryPlanCacheSize);
+	}
+
+	/**
+	 * @return the current generation, it must be read before the query context is built
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Return the cached plan, or build it. A plan is only cached if the fields and the analyzers did not change
+	 * since the given generation.
+	 *
+	 * @param generation   the generation read before the query context has been built
+	 * @param queryContext the context of the query
+	 * @return the plan of the query
+	 */
+	QueryPlan get(final long generation, final QueryContext queryContext)
+			throws QueryNodeException, ReflectiveOperationException, ParseException, IOException {
+		final String key = key(queryContext);
+		if (key == null)
+			return new QueryPlan(queryContext);
+		synchronized (this) {
+			final QueryPlan plan = plans.get(key);
+			if (plan != null) {
+				hits.increment();
+				return plan;
+			}
+		}
+		misses.increment();
+		final QueryPlan plan = new QueryPlan(queryContext);
+		synchronized (this) {
+			if (generation == this.generation) {
+				plans.put(key, plan);
+				final Iterator<QueryPlan> iterator = plans.values().iterator();
+				while (plans.size() > maxEntries && iterator.hasNext()) {
+					iterator.next();
+					iterator.remove();
+				}
+			}
+		}
+		return plan;
+	}
+
+	private static String key(final QueryContext queryContext) {
+		if (queryContext.queryDefinition == null)
+			return null;
+		final ObjectNode node = JsonMapper.MAPPER.valueToTree(queryContext.queryDefinition);
+		node.remove(Arrays.asList(EXECUTION_PROPERTIES));
+		if (!QueryCacheKeys.isComplete(node))
+			return null;
+		boolean readerDependent = false;
+		for (JsonNode type : node.findValues("query")) {
+			if (!type.isTextual())
+				continue;
+			if (JOIN_QUERY.equals(type.asText()))
+				return null;
+			if (READER_DEPENDENT_QUERIES.contains(type.asText()))
+				readerDependent = true;
+		}
+		if (readerDependent) {
+			final IndexReader indexReader = queryContext.indexSearcher.getIndexReader();
+			if (!(indexReader instanceof DirectoryReader))
+				return null;
+			node.put("$reader_version$", ((DirectoryReader) indexReader).getVersion());
+		}
+		return node.toString();
+	}
+
+	/**
+	 * Called when the fields or the analyzers have been updated
+	 */
+	synchronized void invalidate() {
+		generation++;
+		plans.clear();
+		invalidations.increment();
+	}
+
+	synchronized IndexStatus.QueryPlanCacheStatus getStatus() {
+		return new IndexStatus.QueryPlanCacheStatus(plans.size(), hits.sum(), misses.sum(), invalidations.sum());
+	}
+}
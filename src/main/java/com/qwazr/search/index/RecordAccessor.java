@@ -0,0 +1,100 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+/**
+ * Reads the annotated fields of the records using method handles built once per field mapping.
+ * The int, long, float and double fields are read and indexed without boxing.
+ * The accessors are kept by the index instance, see {@link IndexInstance#getRecordAccessor(Map)}.
+ */
+final class RecordAccessor {
+
+	private final static MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+	private final static MethodType INT_GETTER = MethodType.methodType(int.class, Object.class);
+	private final static MethodType LONG_GETTER = MethodType.methodType(long.class, Object.class);
+	private final static MethodType FLOAT_GETTER = MethodType.methodType(float.class, Object.class);
+	private final static MethodType DOUBLE_GETTER = MethodType.methodType(double.class, Object.class);
+
+	private final FieldAccessor[] fieldAccessors;
+
+	/**
+	 * @param fields the mapping between the field names and the fields of the record class
+	 */
+	RecordAccessor(final Map<String, Field> fields) {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		fieldAccessors = new FieldAccessor[fields.size()];
+		int i = 0;
+		for (Map.Entry<String, Field> entry : fields.entrySet())
+			fieldAccessors[i++] = newFieldAccessor(lookup, entry.getKey(), entry.getValue());
+	}
+
+	final void accept(final Object record, final RecordBuilder.ForObject recordBuilder) {
+		try {
+			for (FieldAccessor fieldAccessor : fieldAccessors)
+				fieldAccessor.accept(record, recordBuilder);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	private static FieldAccessor newFieldAccessor(final MethodHandles.Lookup lookup, final String fieldName,
+			final Field field) {
+		final MethodHandle getter;
+		try {
+			getter = lookup.unreflectGetter(field);
+		} catch (IllegalAccessException e) {
+			// Not accessible by a method handle: keep the reflective access
+			return (record, recordBuilder) -> recordBuilder.addFieldValue(fieldName, field.get(record));
+		}
+		final Class<?> type = field.getType();
+		if (type == int.class) {
+			final MethodHandle intGetter = getter.asType(INT_GETTER);
+			return (record, recordBuilder) -> recordBuilder.addFieldInt(fieldName,
+					(int) intGetter.invokeExact(record));
+		}
+		if (type == long.class) {
+			final MethodHandle longGetter = getter.asType(LONG_GETTER);
+			return (record, recordBuilder) -> recordBuilder.addFieldLong(fieldName,
+					(long) longGetter.invokeExact(record));
+		}
+		if (type == float.class) {
+			final MethodHandle floatGetter = getter.asType(FLOAT_GETTER);
+			return (record, recordBuilder) -> recordBuilder.addFieldFloat(fieldName,
+					(float) floatGetter.invokeExact(record));
+		}
+		if (type == double.class) {
+			final MethodHandle doubleGetter = getter.asType(DOUBLE_GETTER);
+			return (record, recordBuilder) -> recordBuilder.addFieldDouble(fieldName,
+					(double) doubleGetter.invokeExact(record));
+		}
+		final MethodHandle objectGetter = getter.asType(OBJECT_GETTER);
+		return (record, recordBuilder) -> recordBuilder.addFieldValue(fieldName,
+				(Object) objectGetter.invokeExact(record));
+	}
+
+	@FunctionalInterface
+	private interface FieldAccessor {
+		void accept(final Object record, final RecordBuilder.ForObject recordBuilder) throws Throwable;
+	}
+}
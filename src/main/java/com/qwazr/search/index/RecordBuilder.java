@@ -45,6 +45,30 @@ abstract class RecordBuilder {
 			id = BytesRefUtils.fromAny(fieldValue);
 	}
 
+	final protected void addFieldInt(final String fieldName, final int fieldValue) {
+		fieldMap.getFieldType(fieldName).dispatchInt(fieldName, fieldValue, fieldConsumer);
+		if (FieldDefinition.ID_FIELD.equals(fieldName))
+			id = BytesRefUtils.fromAny(fieldValue);
+	}
+
+	final protected void addFieldLong(final String fieldName, final long fieldValue) {
+		fieldMap.getFieldType(fieldName).dispatchLong(fieldName, fieldValue, fieldConsumer);
+		if (FieldDefinition.ID_FIELD.equals(fieldName))
+			id = BytesRefUtils.fromAny(fieldValue);
+	}
+
+	final protected void addFieldFloat(final String fieldName, final float fieldValue) {
+		fieldMap.getFieldType(fieldName).dispatchFloat(fieldName, fieldValue, fieldConsumer);
+		if (FieldDefinition.ID_FIELD.equals(fieldName))
+			id = BytesRefUtils.fromAny(fieldValue);
+	}
+
+	final protected void addFieldDouble(final String fieldName, final double fieldValue) {
+		fieldMap.getFieldType(fieldName).dispatchDouble(fieldName, fieldValue, fieldConsumer);
+		if (FieldDefinition.ID_FIELD.equals(fieldName))
+			id = BytesRefUtils.fromAny(fieldValue);
+	}
+
 	final static class ForMap extends RecordBuilder implements BiConsumer<String, Object> {
 
 		ForMap(final FieldMap fieldMap, final FieldConsumer fieldConsumer) {
@@ -58,22 +82,10 @@ abstract class RecordBuilder {
 
 	}
 
-	final static class ForObject extends RecordBuilder implements BiConsumer<String, java.lang.reflect.Field> {
-
-		private final Object record;
+	final static class ForObject extends RecordBuilder {
 
-		ForObject(final FieldMap fieldMap, final FieldConsumer fieldConsumer, final Object record) {
+		ForObject(final FieldMap fieldMap, final FieldConsumer fieldConsumer) {
 			super(fieldMap, fieldConsumer);
-			this.record = record;
-		}
-
-		@Override
-		final public void accept(final String fieldName, final java.lang.reflect.Field field) {
-			try {
-				addFieldValue(fieldName, field.get(record));
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
-			}
 		}
 
 	}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.field.Converters.ValueConverter;
+import com.qwazr.server.ServerException;
+import com.qwazr.utils.SerializationUtils;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Creates and fills the records returned by the annotated searches.
+ * The constructor, the setters and the type checks are resolved once per class and field mapping.
+ * The hydrators are kept by the index instance, see {@link IndexInstance#getRecordHydrator(Class, Map)}.
+ */
+final class RecordHydrator<T> {
+
+	private final static MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+	private final static MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+	private final static MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final Class<T> objectClass;
+	private final MethodHandle constructor;
+	private final Map<String, FieldSetter> setters;
+
+	/**
+	 * @param objectClass the class of the records
+	 * @param fieldMap    the mapping between the field names and the fields of the class
+	 */
+	RecordHydrator(final Class<T> objectClass, final Map<String, Field> fieldMap) {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		this.objectClass = objectClass;
+		this.constructor = findConstructor(lookup, objectClass);
+		this.setters = new HashMap<>();
+		fieldMap.forEach((fieldName, field) -> setters.put(fieldName, new FieldSetter(lookup, fieldName, field)));
+	}
+
+	final Class<T> getObjectClass() {
+		return objectClass;
+	}
+
+	/**
+	 * @param lookup the lookup used to resolve the handle
+	 * @param type   the class to instantiate
+	 * @return the handle of the no-arg constructor, or null if it is not accessible
+	 */
+	private static MethodHandle findConstructor(final MethodHandles.Lookup lookup, final Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			return null;
+		try {
+			return lookup.unreflectConstructor(type.getDeclaredConstructor()).asType(CONSTRUCTOR);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static Object invoke(final MethodHandle constructor) {
+		try {
+			return constructor.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new ServerException((Exception) t);
+		}
+	}
+
+	final T newRecord() {
+		if (constructor == null) {
+			try {
+				return objectClass.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new ServerException(e);
+			}
+		}
+		return (T) invoke(constructor);
+	}
+
+	private FieldSetter getSetter(final String fieldName) {
+		final FieldSetter setter = setters.get(fieldName);
+		if (setter == null)
+			throw new ServerException("Unknown field " + fieldName + " for class " + objectClass);
+		return setter;
+	}
+
+	final void setDocValuesField(final T record, final String fieldName, final ValueConverter converter,
+			final int docId) {
+		final FieldSetter setter = getSetter(fieldName);
+		if (setter.isCollection)
+			converter.fillCollection(docId, () -> setter.getCollection(record));
+		else {
+			final Object value = converter.getSingleValue(fieldName, docId);
+			if (value != null)
+				setter.set(record, value);
+		}
+	}
+
+	final void setStoredField(final T record, final String fieldName, final Object fieldValue) {
+		final FieldSetter setter = getSetter(fieldName);
+		if (setter.valueClass.isInstance(fieldValue)) {
+			setter.set(record, fieldValue);
+			return;
+		}
+		if (setter.isCollection) {
+			setter.getCollection(record).add(fieldValue);
+			return;
+		}
+		if (setter.isSerializable && fieldValue instanceof BytesRef) {
+			final BytesRef br = (BytesRef) fieldValue;
+			final Object value;
+			try {
+				value = SerializationUtils.fromExternalizorBytes(br.bytes,
+						(Class<? extends Serializable>) setter.valueClass);
+			} catch (Exception e) {
+				throw new ServerException(e);
+			}
+			setter.set(record, value);
+			return;
+		}
+		throw new UnsupportedOperationException("The field " + fieldName + " does not support this type: " +
+				fieldValue.getClass().getSimpleName());
+	}
+
+	private final static class FieldSetter {
+
+		private final Field field;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+		private final Class<?> valueClass;
+		private final boolean isCollection;
+		private final boolean isSerializable;
+		private final MethodHandle collectionConstructor;
+
+		private FieldSetter(final MethodHandles.Lookup lookup, final String fieldName, final Field field) {
+			this.field = field;
+			final Class<?> fieldType = field.getType();
+			this.valueClass =
+					fieldType.isPrimitive() ? MethodType.methodType(fieldType).wrap().returnType() : fieldType;
+			this.isCollection = Collection.class.isAssignableFrom(fieldType);
+			this.isSerializable = Serializable.class.isAssignableFrom(fieldType);
+			try {
+				this.getter = lookup.unreflectGetter(field).asType(GETTER);
+				this.setter = lookup.unreflectSetter(field).asType(SETTER);
+			} catch (IllegalAccessException e) {
+				throw new ServerException("The field " + fieldName + " is not accessible: " + e.getMessage());
+			}
+			if (!isCollection)
+				collectionConstructor = null;
+			else if (fieldType.isAssignableFrom(ArrayList.class))
+				collectionConstructor = findConstructor(lookup, ArrayList.class);
+			else if (fieldType.isAssignableFrom(LinkedHashSet.class))
+				collectionConstructor = findConstructor(lookup, LinkedHashSet.class);
+			else
+				collectionConstructor = findConstructor(lookup, fieldType);
+		}
+
+		private void set(final Object record, final Object value) {
+			try {
+				setter.invokeExact(record, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ServerException((Exception) t);
+			}
+		}
+
+		private Object get(final Object record) {
+			try {
+				return (Object) getter.invokeExact(record);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ServerException((Exception) t);
+			}
+		}
+
+		private Collection<Object> getCollection(final Object record) {
+			Collection<Object> collection = (Collection<Object>) get(record);
+			if (collection != null)
+				return collection;
+			if (collectionConstructor == null)
+				throw new ServerException("Cannot instantiate the collection of the field " + field.getName());
+			collection = (Collection<Object>) invoke(collectionConstructor);
+			set(record, collection);
+			return collection;
+		}
+	}
+}
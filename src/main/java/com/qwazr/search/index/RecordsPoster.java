@@ -16,7 +16,6 @@
 package com.qwazr.search.index;
 
 import com.qwazr.search.field.FieldDefinition;
-import com.qwazr.utils.HashUtils;
 import com.qwazr.server.ServerException;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.FacetsConfig;
@@ -26,35 +25,48 @@ import org.apache.lucene.index.Term;
 
 import javax.ws.rs.core.Response;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 abstract class RecordsPoster {
 
-	protected final Map<String, Field> fields;
+	protected final RecordAccessor recordAccessor;
 	protected final FieldMap fieldMap;
 	private final IndexWriter indexWriter;
 	private final TaxonomyWriter taxonomyWriter;
+	private final boolean appendOnly;
 	int counter;
 
-	RecordsPoster(final Map<String, Field> fields, final FieldMap fieldMap, final IndexWriter indexWriter,
-			final TaxonomyWriter taxonomyWriter) {
-		this.fields = fields;
+	RecordsPoster(final RecordAccessor recordAccessor, final FieldMap fieldMap, final IndexWriter indexWriter,
+			final TaxonomyWriter taxonomyWriter, final boolean appendOnly) {
+		this.recordAccessor = recordAccessor;
 		this.fieldMap = fieldMap;
 		this.indexWriter = indexWriter;
 		this.taxonomyWriter = taxonomyWriter;
+		this.appendOnly = appendOnly;
 		this.counter = 0;
 	}
 
-	final void updateDocument(Object id, final FieldConsumer.ForDocument fields) {
-		if (id == null)
-			id = HashUtils.newTimeBasedUUID().toString();
-		final Term termId = new Term(FieldDefinition.ID_FIELD, BytesRefUtils.fromAny(id));
-		final FacetsConfig facetsConfig = fieldMap.getNewFacetsConfig(fields.fieldNameSet);
+	/**
+	 * A document without ID cannot replace an existing one, as well as any document of an append only index:
+	 * it is added without the delete-by-term of an update.
+	 */
+	final void updateDocument(final Object id, final FieldConsumer.ForDocument fields) {
+		final FacetsConfig facetsConfig = fieldMap.getFacetsConfig(fields.fieldNameSet);
 		try {
 			final Document facetedDoc = facetsConfig.build(taxonomyWriter, fields.document);
-			indexWriter.updateDocument(termId, facetedDoc);
+			if (id == null || appendOnly)
+				indexWriter.addDocument(facetedDoc);
+			else
+				indexWriter.updateDocument(new Term(FieldDefinition.ID_FIELD, BytesRefUtils.fromAny(id)), facetedDoc);
 		} catch (IOException e) {
 			throw new ServerException(e);
 		}
@@ -74,10 +86,101 @@ abstract class RecordsPoster {
 		counter++;
 	}
 
+	/**
+	 * Split the records in partitions, each partition is posted by its own poster in a separate thread.
+	 * The first failure stops the other partitions and is thrown once all the threads are done.
+	 * If the wait is interrupted, the partitions are stopped as well and the records being written are completed
+	 * before the interruption is thrown: no thread is left writing in the index.
+	 *
+	 * @param executorService the executor running the partitions
+	 * @param threads         the number of partitions
+	 * @param records         the records to post
+	 * @param posterSupplier  a supplier of new posters
+	 * @param <T>             the type of the records
+	 * @param <P>             the type of the poster
+	 * @return the total number of posted records
+	 * @throws InterruptedException if the wait was interrupted
+	 */
+	static <T, P extends RecordsPoster & Consumer<? super T>> int postParallel(final ExecutorService executorService,
+			final int threads, final Collection<T> records, final Supplier<P> posterSupplier)
+			throws InterruptedException {
+		final List<T> list = new ArrayList<>(records);
+		final int partitionSize = (list.size() + threads - 1) / threads;
+		final AtomicBoolean abort = new AtomicBoolean(false);
+		final List<Future<Integer>> futures = new ArrayList<>(threads);
+		for (int start = 0; start < list.size(); start += partitionSize) {
+			final List<T> partition = list.subList(start, Math.min(start + partitionSize, list.size()));
+			futures.add(executorService.submit(() -> {
+				final P poster = posterSupplier.get();
+				for (T record : partition) {
+					if (abort.get())
+						break;
+					try {
+						poster.accept(record);
+					} catch (RuntimeException e) {
+						abort.set(true);
+						throw e;
+					}
+				}
+				return poster.counter;
+			}));
+		}
+		int counter = 0;
+		RuntimeException error = null;
+		try {
+			for (Future<Integer> future : futures) {
+				try {
+					counter += future.get();
+				} catch (ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof Error)
+						throw (Error) cause;
+					if (error == null)
+						error = cause instanceof RuntimeException ?
+								(RuntimeException) cause :
+								new ServerException((Exception) cause);
+				}
+			}
+		} catch (InterruptedException e) {
+			// The partitions stop at the next record. The writing threads are not interrupted (an interrupted
+			// IndexWriter closes itself), and Future.cancel would not wait for the running partitions.
+			abort.set(true);
+			awaitDone(futures);
+			throw e;
+		}
+		if (error != null)
+			throw error;
+		return counter;
+	}
+
+	/**
+	 * Wait for the end of the tasks, whatever the interruptions of the current thread. The interrupted status is
+	 * restored.
+	 *
+	 * @param futures the tasks to wait for
+	 */
+	private static void awaitDone(final List<Future<Integer>> futures) {
+		boolean interrupted = false;
+		for (Future<Integer> future : futures) {
+			while (!future.isDone()) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
 	final static class UpdateMapDocument extends RecordsPoster implements Consumer<Map<String, Object>> {
 
-		UpdateMapDocument(final FieldMap fieldMap, final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) {
-			super(null, fieldMap, indexWriter, taxonomyWriter);
+		UpdateMapDocument(final FieldMap fieldMap, final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter,
+				final boolean appendOnly) {
+			super(null, fieldMap, indexWriter, taxonomyWriter, appendOnly);
 		}
 
 		@Override
@@ -91,17 +194,16 @@ abstract class RecordsPoster {
 
 	final static class UpdateObjectDocument extends RecordsPoster implements Consumer<Object> {
 
-		UpdateObjectDocument(final Map<String, java.lang.reflect.Field> fields, final FieldMap fieldMap,
-				final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) {
-			super(fields, fieldMap, indexWriter, taxonomyWriter);
+		UpdateObjectDocument(final RecordAccessor recordAccessor, final FieldMap fieldMap,
+				final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter, final boolean appendOnly) {
+			super(recordAccessor, fieldMap, indexWriter, taxonomyWriter, appendOnly);
 		}
 
 		@Override
 		final public void accept(final Object record) {
 			final FieldConsumer.ForDocument documentBuilder = new FieldConsumer.ForDocument();
-			final RecordBuilder.ForObject recordBuilder =
-					new RecordBuilder.ForObject(fieldMap, documentBuilder, record);
-			fields.forEach(recordBuilder);
+			final RecordBuilder.ForObject recordBuilder = new RecordBuilder.ForObject(fieldMap, documentBuilder);
+			recordAccessor.accept(record, recordBuilder);
 			updateDocument(recordBuilder.id, documentBuilder);
 		}
 	}
@@ -110,7 +212,7 @@ abstract class RecordsPoster {
 
 		UpdateMapDocValues(final FieldMap fieldMap, final IndexWriter indexWriter,
 				final TaxonomyWriter taxonomyWriter) {
-			super(null, fieldMap, indexWriter, taxonomyWriter);
+			super(null, fieldMap, indexWriter, taxonomyWriter, false);
 		}
 
 		@Override
@@ -124,16 +226,16 @@ abstract class RecordsPoster {
 
 	final static class UpdateObjectDocValues extends RecordsPoster implements Consumer<Object> {
 
-		UpdateObjectDocValues(final Map<String, Field> fields, final FieldMap fieldMap, final IndexWriter indexWriter,
-				final TaxonomyWriter taxonomyWriter) {
-			super(fields, fieldMap, indexWriter, taxonomyWriter);
+		UpdateObjectDocValues(final RecordAccessor recordAccessor, final FieldMap fieldMap,
+				final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) {
+			super(recordAccessor, fieldMap, indexWriter, taxonomyWriter, false);
 		}
 
 		@Override
 		final public void accept(final Object record) {
 			final FieldConsumer.ForDocValues fieldsBuilder = new FieldConsumer.ForDocValues();
-			final RecordBuilder.ForObject recordBuilder = new RecordBuilder.ForObject(fieldMap, fieldsBuilder, record);
-			fields.forEach(recordBuilder);
+			final RecordBuilder.ForObject recordBuilder = new RecordBuilder.ForObject(fieldMap, fieldsBuilder);
+			recordAccessor.accept(record, recordBuilder);
 			updateDocValues(recordBuilder.id, fieldsBuilder);
 		}
 	}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.qwazr.utils.json.JsonMapper;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.ReferenceManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of the search results. The key is the JSON form of the query definition and the version of the
+ * reader the query has been executed on. The cache is cleared when a new reader is published, a result is
+ * never served from a reader other than the one which computed it. It is also invalidated when the fields or the
+ * analyzers change. The queries which are not fully described by their JSON form are not cached.
+ */
+class ResultCache implements ReferenceManager.RefreshListener {
+
+	private final int maxEntries;
+	private final long maxBytes;
+
+	private final LinkedHashMap<Key, Entry> entries;
+	private long bytes;
+	private long generation;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	private final LongAdder invalidations;
+
+	private ResultCache(final IndexSettingsDefinition settings) {
+		this.maxEntries = settings.resultCacheMaxEntries == null ?
+				IndexSettingsDefinition.DEFAULT_RESULT_CACHE_MAX_ENTRIES :
+				settings.resultCacheMaxEntries;
+		this.maxBytes = (long) ((settings.resultCacheMaxRamMb == null ?
+				IndexSettingsDefinition.DEFAULT_RESULT_CACHE_MAX_RAM_MB :
+				settings.resultCacheMaxRamMb) * 1024 * 1024);
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.bytes = 0;
+		this.generation = 0;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+		this.invalidations = new LongAdder();
+	}
+
+	/**
+	 * @param settings the settings of the index
+	 * @return a new cache, or null if the result cache is not enabled
+	 */
+	static ResultCache of(final IndexSettingsDefinition settings) {
+		if (settings == null || (settings.resultCacheMaxEntries == null && settings.resultCacheMaxRamMb == null))
+			return null;
+		return new ResultCache(settings);
+	}
+
+	/**
+	 * @param indexReader     the reader used by the search
+	 * @param queryDefinition the query
+	 * @return the key of the query, or null if the query must not be cached
+	 */
+	static Key key(final IndexReader indexReader, final QueryDefinition queryDefinition) {
+		if (!(indexReader instanceof DirectoryReader) || queryDefinition == null)
+			return null;
+		if (queryDefinition.bypass_cache != null && queryDefinition.bypass_cache)
+			return null;
+		final ObjectNode node;
+		try {
+			node = JsonMapper.MAPPER.valueToTree(queryDefinition);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		// The wait is done before the reader is acquired: the version of the reader is enough
+		node.remove("wait_for_seq_no");
+		if (!QueryCacheKeys.isComplete(node))
+			return null;
+		return new Key(((DirectoryReader) indexReader).getVersion(), node.toString());
+	}
+
+	synchronized ResultDefinition.WithMap get(final Key key) {
+		final Entry entry = entries.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.result;
+	}
+
+	/**
+	 * @return the current generation, it must be read before the query is executed
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Store a result, unless the cache has been invalidated since the given generation.
+	 *
+	 * @param generation the generation read before the query has been executed
+	 * @param key        the key of the query
+	 * @param result     the result to store
+	 */
+	void put(final long generation, final Key key, final ResultDefinition.WithMap result) {
+		final long size;
+		try {
+			// Estimation of the memory used: two bytes per character of the JSON forms
+			size = (key.query.length() + JsonMapper.MAPPER.writeValueAsString(result).length()) * 2L;
+		} catch (JsonProcessingException e) {
+			return;
+		}
+		if (size > maxBytes)
+			return;
+		synchronized (this) {
+			if (generation != this.generation)
+				return;
+			final Entry previous = entries.put(key, new Entry(result, size));
+			if (previous != null)
+				bytes -= previous.size;
+			bytes += size;
+			final Iterator<Entry> iterator = entries.values().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+				bytes -= iterator.next().size;
+				iterator.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Clear the cache and reject the results computed before with the previous fields or analyzers
+	 */
+	synchronized void invalidate() {
+		generation++;
+		clear();
+		invalidations.increment();
+	}
+
+	@Override
+	public void beforeRefresh() {
+	}
+
+	@Override
+	public void afterRefresh(final boolean didRefresh) {
+		if (!didRefresh)
+			return;
+		clear();
+		invalidations.increment();
+	}
+
+	synchronized IndexStatus.ResultCacheStatus getStatus() {
+		return new IndexStatus.ResultCacheStatus(entries.size(), bytes, hits.sum(), misses.sum(), evictions.sum(),
+				invalidations.sum());
+	}
+
+	static final class Key {
+
+		private final long version;
+		private final String query;
+		private final int hashCode;
+
+		private Key(final long version, final String query) {
+			this.version = version;
+			this.query = query;
+			this.hashCode = Objects.hash(version, query);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o == this)
+				return true;
+			if (!(o instanceof Key))
+				return false;
+			final Key k = (Key) o;
+			return version == k.version && query.equals(k.query);
+		}
+	}
+
+	private static final class Entry {
+
+		private final ResultDefinition.WithMap result;
+		private final long size;
+
+		private Entry(final ResultDefinition.WithMap result, final long size) {
+			this.result = result;
+			this.size = size;
+		}
+	}
+}
@@ -27,6 +27,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 
 	final public TimeTracker.Status timer;
 	final public Long total_hits;
+	final public Boolean total_hits_approximate;
 	final public Float max_score;
 	final public List<T> documents;
 	final public Map<String, Map<String, Number>> facets;
@@ -36,6 +37,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 	public ResultDefinition() {
 		this.timer = null;
 		this.total_hits = null;
+		this.total_hits_approximate = null;
 		this.documents = null;
 		this.facets = null;
 		this.collectors = null;
@@ -47,6 +49,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		this.query = builder.queryDebug;
 		this.timer = builder.timeTrackerStatus;
 		this.total_hits = builder.totalHits;
+		this.total_hits_approximate = builder.totalHitsApproximate;
 		this.max_score = builder.maxScore;
 		this.documents = builder.documents;
 		this.facets = builder.facets;
@@ -57,15 +60,28 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		this.query = src.query;
 		this.timer = src.timer;
 		this.total_hits = src.total_hits;
+		this.total_hits_approximate = src.total_hits_approximate;
 		this.max_score = src.max_score;
 		this.documents = documents;
 		this.facets = src.facets;
 		this.collectors = src.collectors;
 	}
 
+	protected ResultDefinition(final ResultDefinition<T> src, final TimeTracker.Status timer) {
+		this.query = src.query;
+		this.timer = timer;
+		this.total_hits = src.total_hits;
+		this.total_hits_approximate = src.total_hits_approximate;
+		this.max_score = src.max_score;
+		this.documents = src.documents;
+		this.facets = src.facets;
+		this.collectors = src.collectors;
+	}
+
 	ResultDefinition(TimeTracker timeTracker) {
 		query = null;
 		total_hits = 0L;
+		total_hits_approximate = null;
 		documents = Collections.emptyList();
 		facets = null;
 		collectors = null;
@@ -76,6 +92,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 	protected ResultDefinition(long total_hits) {
 		query = null;
 		this.total_hits = total_hits;
+		this.total_hits_approximate = null;
 		documents = Collections.emptyList();
 		facets = null;
 		collectors = null;
@@ -87,6 +104,13 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		return total_hits;
 	}
 
+	/**
+	 * @return true if the total_hits is a lower bound (the collection has been terminated early)
+	 */
+	public Boolean getTotal_hits_approximate() {
+		return total_hits_approximate;
+	}
+
 	public Float getMax_score() {
 		return max_score;
 	}
@@ -124,6 +148,10 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		WithMap(long totalHits) {
 			super(totalHits);
 		}
+
+		WithMap(final WithMap src, final TimeTracker.Status timer) {
+			super(src, timer);
+		}
 	}
 
 	public static class WithObject<T> extends ResultDefinition<ResultDocumentObject<T>> {
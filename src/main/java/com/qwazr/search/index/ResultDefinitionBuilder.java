@@ -45,6 +45,7 @@ class ResultDefinitionBuilder<T extends ResultDocumentAbstract> {
 	final String queryDebug;
 	final TimeTracker.Status timeTrackerStatus;
 	final Long totalHits;
+	final Boolean totalHitsApproximate;
 	final Float maxScore;
 	final LinkedHashMap<String, Map<String, Number>> facets;
 
@@ -52,7 +53,8 @@ class ResultDefinitionBuilder<T extends ResultDocumentAbstract> {
 			final IndexSearcher indexSearcher, final Query luceneQuery, final Map<String, HighlighterImpl> highlighters,
 			final Map<String, Object> externalCollectorsResults, final FieldMap fieldMap, final TimeTracker timeTracker,
 			final ResultDocumentBuilder.BuilderFactory documentBuilderFactory, final FacetsBuilder facetsBuilder,
-			Integer totalHits) throws ReflectiveOperationException, IOException {
+			final Integer totalHits, final boolean totalHitsApproximate)
+			throws ReflectiveOperationException, IOException {
 
 		this.queryDefinition = queryDefinition;
 		this.topDocs = topDocs;
@@ -66,6 +68,7 @@ class ResultDefinitionBuilder<T extends ResultDocumentAbstract> {
 
 		this.maxScore = topDocs == null ? null : topDocs.getMaxScore();
 		this.totalHits = totalHits == null ? null : (long) totalHits;
+		this.totalHitsApproximate = totalHitsApproximate ? true : null;
 
 		this.resultDocumentBuilders = buildResultDocuments();
 		if (resultDocumentBuilders != null) {
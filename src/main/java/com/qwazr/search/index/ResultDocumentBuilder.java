@@ -21,7 +21,6 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.util.BytesRef;
 
-import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -95,18 +94,16 @@ abstract class ResultDocumentBuilder<T extends ResultDocumentAbstract> implement
 
 	static class ObjectBuilderFactory<T> extends BuilderFactory<ResultDocumentObject<T>> {
 
-		private final Class<T> objectClass;
-		private final Map<String, Field> fieldMap;
+		private final RecordHydrator<T> hydrator;
 
-		private ObjectBuilderFactory(final Class<T> objectClass, final Map<String, Field> fieldMap) {
-			this.objectClass = objectClass;
-			this.fieldMap = fieldMap;
+		private ObjectBuilderFactory(final RecordHydrator<T> hydrator) {
+			this.hydrator = hydrator;
 		}
 
 		@Override
 		final ResultDocumentBuilder<ResultDocumentObject<T>> createBuilder(final int pos, final ScoreDoc scoreDoc,
 				final float maxScore) {
-			return new ResultDocumentObject.Builder<>(pos, scoreDoc, maxScore, objectClass, fieldMap);
+			return new ResultDocumentObject.Builder<>(pos, scoreDoc, maxScore, hydrator);
 		}
 
 		@Override
@@ -120,9 +117,8 @@ abstract class ResultDocumentBuilder<T extends ResultDocumentAbstract> implement
 			return new ResultDefinition.WithObject(resultBuilder);
 		}
 
-		final static <T> ObjectBuilderFactory<T> createFactory(final Map<String, Field> fieldMap,
-				final Class<T> objectClass) {
-			return new ObjectBuilderFactory(objectClass, fieldMap);
+		final static <T> ObjectBuilderFactory<T> createFactory(final RecordHydrator<T> hydrator) {
+			return new ObjectBuilderFactory<>(hydrator);
 		}
 
 	}
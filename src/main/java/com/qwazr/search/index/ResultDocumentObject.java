@@ -16,16 +16,7 @@
 package com.qwazr.search.index;
 
 import com.qwazr.search.field.Converters.ValueConverter;
-import com.qwazr.utils.SerializationUtils;
-import com.qwazr.server.ServerException;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.util.BytesRef;
-
-import java.io.IOException;
-import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.Map;
 
 public class ResultDocumentObject<T> extends ResultDocumentAbstract {
 
@@ -48,17 +39,12 @@ public class ResultDocumentObject<T> extends ResultDocumentAbstract {
 	static class Builder<T> extends ResultDocumentBuilder<ResultDocumentObject<T>> {
 
 		private final T record;
-		private final Map<String, Field> fieldMap;
+		private final RecordHydrator<T> hydrator;
 
-		Builder(final int pos, final ScoreDoc scoreDoc, final float maxScore, final Class<T> objectClass,
-				final Map<String, Field> fieldMap) {
+		Builder(final int pos, final ScoreDoc scoreDoc, final float maxScore, final RecordHydrator<T> hydrator) {
 			super(pos, scoreDoc, maxScore);
-			try {
-				this.record = objectClass.newInstance();
-			} catch (ReflectiveOperationException e) {
-				throw new ServerException(e);
-			}
-			this.fieldMap = fieldMap;
+			this.record = hydrator.newRecord();
+			this.hydrator = hydrator;
 		}
 
 		@Override
@@ -68,61 +54,12 @@ public class ResultDocumentObject<T> extends ResultDocumentAbstract {
 
 		@Override
 		void setDocValuesField(final String fieldName, final ValueConverter converter, final int docId) {
-			final Field field = fieldMap.get(fieldName);
-			if (field == null)
-				throw new ServerException("Unknown field " + fieldName + " for class " + record.getClass());
-			final Class<?> fieldType = field.getType();
-			try {
-				if (Collection.class.isAssignableFrom(fieldType))
-					converter.fillCollection(record, field, fieldType, docId);
-				else
-					converter.fillSingleValue(record, field, docId);
-			} catch (ReflectiveOperationException e) {
-				throw new ServerException(e);
-			}
+			hydrator.setDocValuesField(record, fieldName, converter, docId);
 		}
 
 		@Override
 		final void setStoredField(final String fieldName, final Object fieldValue) {
-			final Field field = fieldMap.get(fieldName);
-			if (field == null)
-				throw new ServerException("Unknown field " + fieldName + " for class " + record.getClass());
-
-			final Class<?> fieldType = field.getType();
-			final Class<?> fieldValueClass = fieldValue.getClass();
-
-			try {
-				if (fieldType.isAssignableFrom(fieldValueClass)) {
-					field.set(record, fieldValue);
-					return;
-				}
-				// Check collection
-				Object value = field.get(record);
-				if (value == null) {
-					if (Collection.class.isAssignableFrom(fieldType)) {
-						value = fieldType.newInstance();
-						field.set(record, value);
-						return;
-					}
-				} else {
-					if (value instanceof Collection) {
-						((Collection) value).add(fieldValue);
-						return;
-					}
-				}
-				if (fieldValue instanceof BytesRef) {
-					final BytesRef br = (BytesRef) fieldValue;
-					if (Serializable.class.isAssignableFrom(fieldType)) {
-						field.set(record, SerializationUtils.fromExternalizorBytes(br.bytes,
-								(Class<? extends Serializable>) fieldType));
-						return;
-					}
-				}
-				throw new UnsupportedOperationException(
-						"The field " + fieldName + " does not support this type: " + fieldValueClass.getSimpleName());
-			} catch (ReflectiveOperationException | IOException e) {
-				throw new ServerException(e);
-			}
+			hydrator.setStoredField(record, fieldName, fieldValue);
 		}
 	}
 
@@ -24,7 +24,6 @@ import com.qwazr.utils.StringUtils;
 import com.qwazr.utils.json.JsonMapper;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.lucene.search.SearcherFactory;
 
 import javax.ws.rs.core.Response;
 import java.io.Closeable;
@@ -36,8 +35,9 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
@@ -47,13 +47,12 @@ public class SchemaInstance implements Closeable {
 
 	private final static String SETTINGS_FILE = "settings.json";
 
-	private final SearcherFactory searcherFactory;
 
 	private final ConcurrentHashMap<String, IndexInstanceManager> indexMap;
 
 	private final ClassLoaderManager classLoaderManager;
 	private final IndexServiceInterface service;
-	private final ExecutorService executorService;
+	private final IndexExecutors executors;
 	private final File schemaDirectory;
 	private final File settingsFile;
 	private volatile SchemaSettingsDefinition settingsDefinition;
@@ -65,11 +64,10 @@ public class SchemaInstance implements Closeable {
 	private volatile Semaphore writeSemaphore;
 
 	SchemaInstance(final ClassLoaderManager classLoaderManager, final IndexServiceInterface service,
-			final File schemaDirectory, final ExecutorService executorService)
+			final File schemaDirectory, final IndexExecutors executors)
 			throws IOException, ReflectiveOperationException, URISyntaxException {
 
-		this.searcherFactory = new MultiThreadSearcherFactory(executorService);
-		this.executorService = executorService;
+		this.executors = executors;
 		this.classLoaderManager = classLoaderManager;
 		this.service = service;
 		this.schemaDirectory = schemaDirectory;
@@ -97,16 +95,12 @@ public class SchemaInstance implements Closeable {
 		return service;
 	}
 
-	final SearcherFactory getSearcherFactory() {
-		return searcherFactory;
-	}
-
 	final ClassLoaderManager getClassLoaderManager() {
 		return classLoaderManager;
 	}
 
-	final ExecutorService getExecutorService() {
-		return executorService;
+	final IndexExecutors getExecutors() {
+		return executors;
 	}
 
 	@Override
@@ -150,6 +144,23 @@ public class SchemaInstance implements Closeable {
 		}
 	}
 
+	/**
+	 * Reopen an index whose writer has been rolled back, or which has been opened before the fields of its index sort
+	 * were defined
+	 *
+	 * @param indexName      the name of the index
+	 * @param failedInstance the instance to replace
+	 * @return the new instance
+	 */
+	IndexInstance reopen(final String indexName, final IndexInstance failedInstance) {
+		final IndexInstanceManager indexInstanceManager = checkIndexExists(indexName, indexMap.get(indexName));
+		try {
+			return indexInstanceManager.reopen(failedInstance);
+		} catch (Exception e) {
+			throw new ServerException(e);
+		}
+	}
+
 	void delete() {
 		indexMap.forEachValue(1, IndexInstanceManager::delete);
 		if (schemaDirectory.exists())
@@ -321,42 +332,78 @@ public class SchemaInstance implements Closeable {
 			backupRootDirectory = null;
 	}
 
-	private static Semaphore atomicAquire(final Semaphore semaphore) {
+	private static Semaphore atomicAquire(final Semaphore semaphore, final long timeoutNs) throws TimeoutException {
 		if (semaphore == null)
 			return null;
 		try {
-			semaphore.acquire();
+			if (timeoutNs < 0)
+				semaphore.acquire();
+			else if (!semaphore.tryAcquire(timeoutNs, TimeUnit.NANOSECONDS))
+				throw new TimeoutException();
 			return semaphore;
 		} catch (InterruptedException e) {
 			throw new ServerException(e);
 		}
 	}
 
-	Semaphore acquireReadSemaphore() {
-		return atomicAquire(readSemaphore);
+	/**
+	 * @return the number of threads used to build the documents of a bulk request
+	 */
+	int getIndexingThreads() {
+		final SchemaSettingsDefinition settings = settingsDefinition;
+		return settings == null || settings.indexing_threads == null ? 1 : settings.indexing_threads;
+	}
+
+	/**
+	 * @param timeoutNs the maximum time to wait in nanoseconds, or a negative value to wait without limit
+	 * @return the acquired semaphore, or null if the reads are not limited
+	 * @throws TimeoutException if no permit has been available before the timeout
+	 */
+	Semaphore acquireReadSemaphore(final long timeoutNs) throws TimeoutException {
+		return atomicAquire(readSemaphore, timeoutNs);
 	}
 
-	Semaphore acquireWriteSemaphore() {
-		return atomicAquire(writeSemaphore);
+	/**
+	 * @param timeoutNs the maximum time to wait in nanoseconds, or a negative value to wait without limit
+	 * @return the acquired semaphore, or null if the writes are not limited
+	 * @throws TimeoutException if no permit has been available before the timeout
+	 */
+	Semaphore acquireWriteSemaphore(final long timeoutNs) throws TimeoutException {
+		return atomicAquire(writeSemaphore, timeoutNs);
 	}
 
+	/**
+	 * The live documents counters are upper bounds: a document replacing an existing one is counted twice until
+	 * the next refresh. A write is only rejected if the exact counts of freshly refreshed searchers exceed the
+	 * limit as well.
+	 *
+	 * @param addSize the number of documents to add
+	 * @throws IOException if a searcher could not be refreshed
+	 */
 	final void checkSize(final int addSize) throws IOException {
 		if (settingsDefinition == null)
 			return;
 		if (settingsDefinition.max_size == null)
 			return;
+		if (getSize(false) + addSize <= settingsDefinition.max_size)
+			return;
+		if (getSize(true) + addSize <= settingsDefinition.max_size)
+			return;
+		throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+				"This schema is limited to " + settingsDefinition.max_size + " documents");
+	}
+
+	private long getSize(final boolean refresh) throws IOException {
 		final AtomicLong totalSize = new AtomicLong();
 		indexIterator("*", (name, indexInstance) -> {
-			final long indexSize;
 			try {
-				indexSize = indexInstance.getStatus().num_docs;
-			} catch (IOException | InterruptedException e) {
+				totalSize.addAndGet(
+						refresh ? indexInstance.getRefreshedLiveDocsCount() : indexInstance.getLiveDocsCount());
+			} catch (IOException e) {
 				throw new ServerException(e);
 			}
-			if (totalSize.addAndGet(indexSize) + addSize > settingsDefinition.max_size)
-				throw new ServerException(Response.Status.NOT_ACCEPTABLE,
-						"This schema is limited to " + settingsDefinition.max_size + " documents");
 		});
+		return totalSize.get();
 	}
 
 	IndexCheckStatus checkIndex(String indexName) throws IOException {
@@ -26,20 +26,28 @@ public class SchemaSettingsDefinition {
 	final public Integer max_simultaneous_read;
 	final public Long max_size;
 	final public String backup_directory_path;
+	final public Integer indexing_threads;
 
 	public SchemaSettingsDefinition() {
 		max_simultaneous_write = null;
 		max_simultaneous_read = null;
 		max_size = null;
 		backup_directory_path = null;
+		indexing_threads = null;
 	}
 
 	public SchemaSettingsDefinition(final Integer max_simultaneous_write, final Integer max_simultaneous_read,
-			final Long max_size, final String backupDirectoryPath) {
+			final Long max_size, final String backupDirectoryPath, final Integer indexingThreads) {
 		this.max_simultaneous_write = max_simultaneous_write;
 		this.max_simultaneous_read = max_simultaneous_read;
 		this.max_size = max_size;
 		this.backup_directory_path = backupDirectoryPath;
+		this.indexing_threads = indexingThreads;
+	}
+
+	public SchemaSettingsDefinition(final Integer max_simultaneous_write, final Integer max_simultaneous_read,
+			final Long max_size, final String backupDirectoryPath) {
+		this(max_simultaneous_write, max_simultaneous_read, max_size, backupDirectoryPath, null);
 	}
 
 	@Override
@@ -55,6 +63,8 @@ public class SchemaSettingsDefinition {
 			return false;
 		if (!Objects.equals(backup_directory_path, def.backup_directory_path))
 			return false;
+		if (!Objects.equals(indexing_threads, def.indexing_threads))
+			return false;
 		return true;
 	}
 
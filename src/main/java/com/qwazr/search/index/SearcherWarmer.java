@@ -0,0 +1,242 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Weight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warm a new searcher before it is published: the doc values are loaded, then the warm-up queries of the
+ * settings and the most recent sampled queries are executed, until the time budget is reached. A query still
+ * running when the time budget is reached is stopped.
+ */
+class SearcherWarmer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SearcherWarmer.class);
+
+	final static int SAMPLE_RATE = 16;
+
+	interface QueryRunner {
+		void run(IndexSearcher searcher, TaxonomyReader taxonomyReader, QueryDefinition queryDefinition,
+				long deadline) throws Exception;
+	}
+
+	private final String indexName;
+	private final List<QueryDefinition> warmUpQueries;
+	private final int maxRecentQueries;
+	private final long timeBudgetMs;
+	private final QueryRunner queryRunner;
+
+	private final ConcurrentLinkedDeque<QueryDefinition> recentQueries;
+	private final AtomicInteger recentQueriesCount;
+	private final AtomicLong sampleCounter;
+
+	private final LongAdder warmUps;
+	private final LongAdder queries;
+	private final LongAdder timeouts;
+	private final LongAdder totalDurationMs;
+	private volatile long lastDurationMs;
+
+	private SearcherWarmer(final String indexName, final IndexSettingsDefinition settings,
+			final QueryRunner queryRunner) {
+		this.indexName = indexName;
+		this.warmUpQueries = settings.warmUpQueries;
+		this.maxRecentQueries = settings.warmUpRecentQueries == null ? 0 : settings.warmUpRecentQueries;
+		this.timeBudgetMs = settings.warmUpTimeBudgetMs == null ?
+				IndexSettingsDefinition.DEFAULT_WARM_UP_TIME_BUDGET_MS :
+				settings.warmUpTimeBudgetMs;
+		this.queryRunner = queryRunner;
+		this.recentQueries = new ConcurrentLinkedDeque<>();
+		this.recentQueriesCount = new AtomicInteger();
+		this.sampleCounter = new AtomicLong();
+		this.warmUps = new LongAdder();
+		this.queries = new LongAdder();
+		this.timeouts = new LongAdder();
+		this.totalDurationMs = new LongAdder();
+		this.lastDurationMs = 0;
+	}
+
+	/**
+	 * @param indexName   the name of the index
+	 * @param settings    the settings of the index
+	 * @param queryRunner executes a query on a given searcher
+	 * @return a new warmer, or null if no warm-up is defined
+	 */
+	static SearcherWarmer of(final String indexName, final IndexSettingsDefinition settings,
+			final QueryRunner queryRunner) {
+		if (settings == null)
+			return null;
+		if ((settings.warmUpQueries == null || settings.warmUpQueries.isEmpty()) &&
+				(settings.warmUpRecentQueries == null || settings.warmUpRecentQueries <= 0))
+			return null;
+		return new SearcherWarmer(indexName, settings, queryRunner);
+	}
+
+	/**
+	 * Keep one query every {@link #SAMPLE_RATE} queries in the log of the recent queries
+	 *
+	 * @param queryDefinition an executed query
+	 */
+	void sample(final QueryDefinition queryDefinition) {
+		if (maxRecentQueries <= 0 || queryDefinition == null)
+			return;
+		if (sampleCounter.getAndIncrement() % SAMPLE_RATE != 0)
+			return;
+		recentQueries.addFirst(queryDefinition);
+		if (recentQueriesCount.incrementAndGet() > maxRecentQueries && recentQueries.pollLast() != null)
+			recentQueriesCount.decrementAndGet();
+	}
+
+	/**
+	 * @param searcher       the new searcher
+	 * @param taxonomyReader a taxonomy reader knowing every category of the new searcher
+	 * @throws IOException if the doc values cannot be loaded
+	 */
+	void warm(final IndexSearcher searcher, final TaxonomyReader taxonomyReader) throws IOException {
+		final long start = System.currentTimeMillis();
+		final long deadline = start + timeBudgetMs;
+		preloadDocValues(searcher.getIndexReader());
+		final List<QueryDefinition> queryDefinitions = new ArrayList<>();
+		if (warmUpQueries != null)
+			queryDefinitions.addAll(warmUpQueries);
+		queryDefinitions.addAll(recentQueries);
+		for (QueryDefinition queryDefinition : queryDefinitions) {
+			if (System.currentTimeMillis() >= deadline) {
+				timeouts.increment();
+				break;
+			}
+			try {
+				queryRunner.run(searcher, taxonomyReader, queryDefinition, deadline);
+				queries.increment();
+			} catch (DeadlineExceededException e) {
+				timeouts.increment();
+				break;
+			} catch (Exception e) {
+				LOGGER.warn("Warm-up query failed - Index: " + indexName, e);
+			}
+		}
+		lastDurationMs = System.currentTimeMillis() - start;
+		totalDurationMs.add(lastDurationMs);
+		warmUps.increment();
+	}
+
+	private static void preloadDocValues(final IndexReader indexReader) throws IOException {
+		for (LeafReaderContext leafContext : indexReader.leaves()) {
+			final LeafReader leafReader = leafContext.reader();
+			for (FieldInfo fieldInfo : leafReader.getFieldInfos()) {
+				switch (fieldInfo.getDocValuesType()) {
+				case NUMERIC:
+					leafReader.getNumericDocValues(fieldInfo.name);
+					break;
+				case BINARY:
+					leafReader.getBinaryDocValues(fieldInfo.name);
+					break;
+				case SORTED:
+					leafReader.getSortedDocValues(fieldInfo.name);
+					break;
+				case SORTED_NUMERIC:
+					leafReader.getSortedNumericDocValues(fieldInfo.name);
+					break;
+				case SORTED_SET:
+					leafReader.getSortedSetDocValues(fieldInfo.name);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+	}
+
+	IndexStatus.WarmUpStatus getStatus() {
+		return new IndexStatus.WarmUpStatus(warmUps.sum(), queries.sum(), timeouts.sum(), lastDurationMs,
+				totalDurationMs.sum(), recentQueriesCount.get());
+	}
+
+	/**
+	 * A searcher which stops the collection once the deadline is reached. The deadline is checked before each
+	 * segment and every {@link #CHECK_INTERVAL} collected documents. The segments are searched by the calling
+	 * thread.
+	 */
+	static final class DeadlineSearcher extends IndexSearcher {
+
+		private final static int CHECK_INTERVAL = 1024;
+
+		private final long deadline;
+
+		/**
+		 * @param reader   the reader to search
+		 * @param deadline the time (in milliseconds) after which the collection is stopped
+		 */
+		DeadlineSearcher(final IndexReader reader, final long deadline) {
+			super(reader);
+			this.deadline = deadline;
+		}
+
+		private void checkDeadline() {
+			if (System.currentTimeMillis() >= deadline)
+				throw new DeadlineExceededException();
+		}
+
+		@Override
+		protected void search(final List<LeafReaderContext> leaves, final Weight weight, final Collector collector)
+				throws IOException {
+			checkDeadline();
+			super.search(leaves, weight, new FilterCollector(collector) {
+				@Override
+				public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException {
+					checkDeadline();
+					return new FilterLeafCollector(super.getLeafCollector(context)) {
+
+						private int collected;
+
+						@Override
+						public void collect(final int doc) throws IOException {
+							if (++collected % CHECK_INTERVAL == 0)
+								checkDeadline();
+							super.collect(doc);
+						}
+					};
+				}
+			});
+		}
+	}
+
+	static final class DeadlineExceededException extends RuntimeException {
+
+		private DeadlineExceededException() {
+			super("The warm-up time budget is exceeded", null, false, false);
+		}
+	}
+}
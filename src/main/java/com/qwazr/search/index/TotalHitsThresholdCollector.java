@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count the hits until the threshold is reached, then terminate the collection.
+ * The collection is only terminated once the wrapped collector has collected the number of hits it keeps:
+ * the caller must ensure that the hits collected later cannot change the top documents.
+ * If the hits are collected in the order of the index sort, each leaf keeps its own best hits: the leaves are then
+ * terminated one by one, once they have collected the number of hits kept.
+ * The hits are counted by batches in a counter shared by the slices of the search.
+ */
+class TotalHitsThresholdCollector implements Collector {
+
+	private final static int MAX_BATCH = 256;
+
+	private final Collector in;
+	private final int minCollected;
+	private final boolean perLeaf;
+	private final int threshold;
+	private final int batch;
+	private final AtomicInteger sharedCount;
+
+	private int totalHits;
+	private int pendingHits;
+	private boolean terminated;
+
+	/**
+	 * @param in           the collector of the top documents, or null to only count the hits
+	 * @param minCollected the number of hits collected before the collection can be terminated
+	 * @param perLeaf      true if minCollected applies to each leaf (the hits are sorted by the index sort)
+	 * @param threshold    the number of hits above which the collection is terminated
+	 * @param sharedCount  the hits counted by all the slices of the search
+	 */
+	TotalHitsThresholdCollector(final Collector in, final int minCollected, final boolean perLeaf,
+			final int threshold, final AtomicInteger sharedCount) {
+		this.in = in;
+		this.minCollected = minCollected;
+		this.perLeaf = perLeaf;
+		this.threshold = threshold;
+		this.batch = Math.max(1, Math.min(MAX_BATCH, threshold));
+		this.sharedCount = sharedCount;
+		this.totalHits = 0;
+		this.pendingHits = 0;
+		this.terminated = false;
+	}
+
+	@Override
+	public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException {
+		final int collected = perLeaf ? 0 : totalHits;
+		if ((terminated && !perLeaf) || (sharedCount.get() >= threshold && collected >= minCollected)) {
+			terminated = true;
+			throw new CollectionTerminatedException();
+		}
+		final LeafCollector leafCollector = in == null ? null : in.getLeafCollector(context);
+		return new LeafCollector() {
+
+			private int leafHits = 0;
+
+			@Override
+			public void setScorer(final Scorer scorer) throws IOException {
+				if (leafCollector != null)
+					leafCollector.setScorer(scorer);
+			}
+
+			@Override
+			public void collect(final int doc) throws IOException {
+				if (leafCollector != null)
+					leafCollector.collect(doc);
+				totalHits++;
+				leafHits++;
+				if (++pendingHits < batch)
+					return;
+				final int count = sharedCount.addAndGet(pendingHits);
+				pendingHits = 0;
+				if (count >= threshold && (perLeaf ? leafHits : totalHits) >= minCollected) {
+					terminated = true;
+					throw new CollectionTerminatedException();
+				}
+			}
+		};
+	}
+
+	@Override
+	public boolean needsScores() {
+		return in != null && in.needsScores();
+	}
+
+	int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * @return true if some hits have not been counted
+	 */
+	boolean isTerminated() {
+		return terminated;
+	}
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2015-2016 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qwazr.utils.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the document writes.
+ * Each batch is appended and synced to the disk before being applied to the IndexWriter.
+ * The ID of the last batch included in a commit is stored in the commit user data,
+ * the older generations of the log are then deleted.
+ * <p>
+ * Entry format: length (int), id (long), operation (byte), CRC32 of id/operation/payload (int), JSON payload.
+ */
+class Translog implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Translog.class);
+
+	final static String COMMIT_DATA_KEY = "qwazr.translog.id";
+
+	private final static String FILE_PREFIX = "translog-";
+	private final static int HEADER_SIZE = 4 + 8 + 1 + 4;
+	private final static int MAX_ENTRY_SIZE = Integer.MAX_VALUE - HEADER_SIZE;
+
+	enum Operation {
+		POST_DOCUMENTS, UPDATE_DOC_VALUES
+	}
+
+	interface Replayer {
+		void replay(Operation operation, List<Map<String, Object>> documents) throws IOException;
+	}
+
+	private final String indexName;
+	private final File directory;
+	private final ReentrantReadWriteLock lock;
+	private final ObjectWriter objectWriter;
+
+	private long lastId;
+	private long generation;
+	private FileChannel channel;
+
+	private Translog(final String indexName, final File directory, final long committedId) throws IOException {
+		this.indexName = indexName;
+		this.directory = directory;
+		this.lock = new ReentrantReadWriteLock(true);
+		this.objectWriter = JsonMapper.MAPPER.writer();
+		if (!directory.exists())
+			directory.mkdir();
+		if (!directory.isDirectory())
+			throw new IOException("The translog path is not a directory: " + directory.getAbsolutePath());
+		// The generations included in the last commit have been deleted: the IDs continue after the committed one
+		this.lastId = committedId;
+		this.generation = 0;
+		// Read the existing generations to find the last valid entry
+		for (Map.Entry<Long, File> entry : listGenerations().entrySet()) {
+			generation = entry.getKey();
+			readGeneration(entry.getValue(), (id, operation, payload) -> {
+				if (id > lastId)
+					lastId = id;
+			});
+		}
+		// Never append to an existing file: its tail may be truncated
+		openGeneration(generation + 1);
+	}
+
+	/**
+	 * @param indexName the name of the index
+	 * @param settings  the settings of the index
+	 * @param directory   the directory of the log files
+	 * @param committedId the ID of the last entry included in the last commit
+	 * @return a new translog, or null if the translog is not enabled in the settings
+	 * @throws IOException if the log files cannot be read or created
+	 */
+	static Translog of(final String indexName, final IndexSettingsDefinition settings, final File directory,
+			final long committedId) throws IOException {
+		if (settings == null || settings.translog == null || !settings.translog)
+			return null;
+		return new Translog(indexName, directory, committedId);
+	}
+
+	/**
+	 * @param commitData the user data of the last commit
+	 * @return the ID of the last entry included in the commit
+	 */
+	static long getCommittedId(final Iterable<Map.Entry<String, String>> commitData) {
+		if (commitData != null)
+			for (Map.Entry<String, String> entry : commitData)
+				if (COMMIT_DATA_KEY.equals(entry.getKey()))
+					return Long.parseLong(entry.getValue());
+		return 0;
+	}
+
+	private TreeMap<Long, File> listGenerations() {
+		final TreeMap<Long, File> generations = new TreeMap<>();
+		final File[] files = directory.listFiles();
+		if (files == null)
+			return generations;
+		for (File file : files) {
+			final String name = file.getName();
+			if (!name.startsWith(FILE_PREFIX))
+				continue;
+			try {
+				generations.put(Long.parseLong(name.substring(FILE_PREFIX.length())), file);
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Unexpected translog file: " + file + " - Index: " + indexName);
+			}
+		}
+		return generations;
+	}
+
+	private void openGeneration(final long newGeneration) throws IOException {
+		final File file = new File(directory, FILE_PREFIX + newGeneration);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		generation = newGeneration;
+	}
+
+	/**
+	 * Append a batch and sync it to the disk. On success, the read lock is held until {@link #end()} is called:
+	 * the batch must be applied to the IndexWriter before a commit can take a checkpoint.
+	 *
+	 * @param operation the type of write
+	 * @param documents the documents of the batch
+	 * @throws IOException if the entry cannot be written
+	 */
+	void begin(final Operation operation, final Collection<Map<String, Object>> documents) throws IOException {
+		final byte[] payload = objectWriter.writeValueAsBytes(documents);
+		if (payload.length > MAX_ENTRY_SIZE)
+			throw new IOException("The batch is too large for the translog - Index: " + indexName);
+		lock.readLock().lock();
+		try {
+			synchronized (this) {
+				final long id = lastId + 1;
+				final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+				buffer.putInt(payload.length);
+				buffer.putLong(id);
+				buffer.put((byte) operation.ordinal());
+				buffer.putInt(checksum(id, operation.ordinal(), payload));
+				buffer.put(payload);
+				buffer.flip();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				channel.force(false);
+				lastId = id;
+			}
+		} catch (IOException | RuntimeException e) {
+			lock.readLock().unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Release the lock acquired by {@link #begin(Operation, Collection)}
+	 */
+	void end() {
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Wait for the batches being applied, then start a new generation.
+	 *
+	 * @return the checkpoint to store in the commit user data
+	 * @throws IOException if the new generation cannot be created
+	 */
+	Checkpoint checkpoint() throws IOException {
+		lock.writeLock().lock();
+		try {
+			synchronized (this) {
+				channel.close();
+				openGeneration(generation + 1);
+				return new Checkpoint(lastId, generation);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Delete the generations included in a successful commit
+	 *
+	 * @param checkpoint the checkpoint stored in the commit
+	 */
+	void committed(final Checkpoint checkpoint) {
+		listGenerations().headMap(checkpoint.generation).forEach((gen, file) -> {
+			try {
+				Files.deleteIfExists(file.toPath());
+			} catch (IOException e) {
+				LOGGER.warn("Cannot delete the translog file: " + file + " - Index: " + indexName, e);
+			}
+		});
+	}
+
+	/**
+	 * Replay the entries which are not included in the last commit
+	 *
+	 * @param committedId the ID of the last committed entry
+	 * @param replayer    applies the entries
+	 * @return the number of replayed entries
+	 * @throws IOException if a log file cannot be read or an entry cannot be applied
+	 */
+	int replay(final long committedId, final Replayer replayer) throws IOException {
+		final ObjectReader objectReader = JsonMapper.MAPPER.readerFor(IndexServiceInterface.ListMapStringObjectTypeRef);
+		final int[] count = { 0 };
+		for (Map.Entry<Long, File> entry : listGenerations().headMap(generation).entrySet()) {
+			readGeneration(entry.getValue(), (id, operation, payload) -> {
+				if (id <= committedId)
+					return;
+				final List<Map<String, Object>> documents = objectReader.readValue(payload);
+				replayer.replay(operation, documents);
+				count[0]++;
+			});
+		}
+		if (count[0] > 0)
+			LOGGER.info(count[0] + " translog entries replayed - Index: " + indexName);
+		return count[0];
+	}
+
+	private interface EntryConsumer {
+		void accept(long id, Operation operation, byte[] payload) throws IOException;
+	}
+
+	/**
+	 * Read the entries of one generation. The reading stops at the first truncated or corrupted entry:
+	 * it has been written during a crash and has never been acknowledged.
+	 */
+	private void readGeneration(final File file, final EntryConsumer consumer) throws IOException {
+		try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			final long fileLength = file.length();
+			for (; ; ) {
+				final int length;
+				try {
+					length = input.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				try {
+					if (length < 0 || length > fileLength) {
+						LOGGER.warn("Corrupted translog entry in " + file + " - Index: " + indexName);
+						return;
+					}
+					final long id = input.readLong();
+					final int operation = input.readByte();
+					final int crc = input.readInt();
+					final byte[] payload = new byte[length];
+					input.readFully(payload);
+					if (operation < 0 || operation >= Operation.values().length ||
+							crc != checksum(id, operation, payload)) {
+						LOGGER.warn("Corrupted translog entry " + id + " in " + file + " - Index: " + indexName);
+						return;
+					}
+					consumer.accept(id, Operation.values()[operation], payload);
+				} catch (EOFException e) {
+					LOGGER.warn("Truncated translog entry in " + file + " - Index: " + indexName);
+					return;
+				}
+			}
+		}
+	}
+
+	private static int checksum(final long id, final int operation, final byte[] payload) {
+		final CRC32 crc32 = new CRC32();
+		final ByteBuffer header = ByteBuffer.allocate(8 + 1);
+		header.putLong(id);
+		header.put((byte) operation);
+		crc32.update(header.array());
+		crc32.update(payload);
+		return (int) crc32.getValue();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null && channel.isOpen())
+			channel.close();
+	}
+
+	static final class Checkpoint {
+
+		private final long id;
+		private final long generation;
+
+		private Checkpoint(final long id, final long generation) {
+			this.id = id;
+			this.generation = generation;
+		}
+
+		/**
+		 * @param commitData the current user data of the commit
+		 * @return the user data including the ID of the checkpoint
+		 */
+		Iterable<Map.Entry<String, String>> getCommitData(final Iterable<Map.Entry<String, String>> commitData) {
+			final Map<String, String> data = new LinkedHashMap<>();
+			if (commitData != null)
+				commitData.forEach(entry -> data.put(entry.getKey(), entry.getValue()));
+			data.put(COMMIT_DATA_KEY, Long.toString(id));
+			return data.entrySet();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.server.ServerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queues of the admission control reject the requests when they are full or when the queue time budget is
+ * exceeded. The index limits replace the schema semaphores: no schema is given to the admission control.
+ */
+public class AdmissionControlTest {
+
+	private static AdmissionControl newAdmissionControl(final Integer maxQueued, final Long maxQueueTimeMs) {
+		return new AdmissionControl("admission_index", null, IndexSettingsDefinition.of()
+				.maxConcurrentSearches(1)
+				.maxConcurrentWrites(1)
+				.maxQueuedRequests(maxQueued)
+				.maxQueueTimeMs(maxQueueTimeMs)
+				.build());
+	}
+
+	private static void assertRejected(final AdmissionControl admissionControl,
+			final AdmissionControl.RequestClass requestClass) {
+		try {
+			admissionControl.acquire(requestClass).release();
+			Assert.fail("The request should be rejected");
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getStatusCode());
+		}
+	}
+
+	@Test
+	public void queueFull() {
+		final AdmissionControl admissionControl = newAdmissionControl(0, null);
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.search);
+		assertRejected(admissionControl, AdmissionControl.RequestClass.search);
+		// The writes have their own queue
+		admissionControl.acquire(AdmissionControl.RequestClass.write).release();
+		permit.release();
+		admissionControl.acquire(AdmissionControl.RequestClass.search).release();
+
+		final IndexStatus.AdmissionStatus status = admissionControl.getStatus().get("search");
+		Assert.assertEquals(Long.valueOf(2), status.admitted);
+		Assert.assertEquals(Long.valueOf(1), status.rejected);
+		Assert.assertEquals(Integer.valueOf(0), status.active);
+	}
+
+	@Test
+	public void queueTimeBudget() {
+		final long budgetMs = 100;
+		final AdmissionControl admissionControl = newAdmissionControl(10, budgetMs);
+		final AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.RequestClass.write);
+		final long start = System.nanoTime();
+		assertRejected(admissionControl, AdmissionControl.RequestClass.write);
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= budgetMs);
+		permit.release();
+		admissionControl.acquire(AdmissionControl.RequestClass.write).release();
+
+		final IndexStatus.AdmissionStatus status = admissionControl.getStatus().get("write");
+		Assert.assertEquals(Long.valueOf(2), status.admitted);
+		Assert.assertEquals(Long.valueOf(1), status.rejected);
+		Assert.assertEquals(Integer.valueOf(0), status.queued);
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stopped commit thread is restarted by the next write: an applied write is never reported as failed.
+ */
+public class CommitSchedulerRestartTest {
+
+	private IndexWriter indexWriter;
+	private AtomicInteger commits;
+	private AtomicBoolean failNextCommit;
+	private CommitScheduler commitScheduler;
+
+	@Before
+	public void before() throws IOException {
+		indexWriter = new IndexWriter(new RAMDirectory(), new IndexWriterConfig());
+		commits = new AtomicInteger();
+		failNextCommit = new AtomicBoolean();
+		// The interval is never reached during the test: only the waiting writes are committed
+		commitScheduler = CommitScheduler.of("restart_index",
+				IndexSettingsDefinition.of().commitIntervalMs(3600000L).build(), indexWriter, () -> {
+					if (failNextCommit.getAndSet(false))
+						throw new AssertionError("Commit thread failure");
+					indexWriter.commit();
+					commits.incrementAndGet();
+				});
+	}
+
+	@After
+	public void after() throws IOException {
+		commitScheduler.close();
+		indexWriter.close();
+	}
+
+	private void write() throws IOException, InterruptedException {
+		commitScheduler.beforeWrite();
+		indexWriter.addDocument(new Document());
+		commitScheduler.afterWrite(1, true);
+	}
+
+	@Test
+	public void restartAfterInterruption() throws IOException, InterruptedException {
+		write();
+		Assert.assertEquals(1, commits.get());
+		final Thread thread = commitScheduler.interruptThread();
+		thread.join(10000);
+		Assert.assertFalse(thread.isAlive());
+		write();
+		Assert.assertEquals(2, commits.get());
+		Assert.assertEquals(2, indexWriter.numDocs());
+	}
+
+	@Test
+	public void restartAfterError() throws IOException, InterruptedException {
+		failNextCommit.set(true);
+		// The thread dies on the error, the write is committed by the restarted thread
+		write();
+		Assert.assertEquals(1, commits.get());
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.PostStreamStatus;
+import com.qwazr.search.index.QueryBuilder;
+import com.qwazr.search.index.SchemaSettingsDefinition;
+import com.qwazr.search.query.TermQuery;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BulkBuildTest {
+
+	private final static String SCHEMA = "bulk_schema";
+	private final static String INDEX = "bulk_index";
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("BulkBuildTest");
+		open();
+		service.createUpdateSchema(SCHEMA);
+		service.createUpdateIndex(SCHEMA, INDEX);
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		fields.put("category",
+				new FieldDefinition.Builder(FieldDefinition.Template.StringField).stored(true).build());
+		service.setFields(SCHEMA, INDEX, fields);
+	}
+
+	private static void open() throws IOException {
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+	}
+
+	private static void close() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		close();
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static InputStream lines(final String... lines) {
+		return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static long count(final String category) {
+		return service.searchQuery(SCHEMA, INDEX, new QueryBuilder(new TermQuery("category", category)).build(),
+				null).total_hits;
+	}
+
+	@Test
+	public void test100PostDocuments() {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, "0");
+		document.put("category", "before");
+		service.postMappedDocument(SCHEMA, INDEX, document);
+		Assert.assertEquals(1, count("before"));
+	}
+
+	@Test
+	public void test200BulkBuild() {
+		final PostStreamStatus status = service.bulkBuildMappedDocuments(SCHEMA, INDEX,
+				lines("{\"$id$\":\"1\",\"category\":\"bulk\"}", "not json", "{\"$id$\":\"2\",\"category\":\"bulk\"}",
+						"{\"$id$\":\"3\",\"category\":\"bulk\"}"), 2);
+		Assert.assertEquals(Integer.valueOf(3), status.count);
+		Assert.assertEquals(1, status.errors.size());
+		// The build replaces the documents of the index
+		Assert.assertEquals(0, count("before"));
+		Assert.assertEquals(3, count("bulk"));
+		Assert.assertEquals(Long.valueOf(3), service.getIndex(SCHEMA, INDEX).num_docs);
+	}
+
+	@Test
+	public void test300FailedBulkBuild() {
+		final InputStream failingStream = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Broken stream");
+			}
+		};
+		try {
+			service.bulkBuildMappedDocuments(SCHEMA, INDEX,
+					new SequenceInputStream(lines("{\"$id$\":\"4\",\"category\":\"failed\"}\n"), failingStream), 2);
+			Assert.fail("The bulk build should fail");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+		// The index keeps its documents and accepts new writes
+		Assert.assertEquals(0, count("failed"));
+		Assert.assertEquals(3, count("bulk"));
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, "5");
+		document.put("category", "after");
+		service.postMappedDocument(SCHEMA, INDEX, document);
+		Assert.assertEquals(1, count("after"));
+	}
+
+	@Test
+	public void test400Reopen() throws IOException {
+		close();
+		open();
+		Assert.assertEquals(3, count("bulk"));
+		Assert.assertEquals(1, count("after"));
+		Assert.assertEquals(Long.valueOf(4), service.getIndex(SCHEMA, INDEX).num_docs);
+	}
+
+	@Test
+	public void test500MaxSize() {
+		service.createUpdateSchema(SCHEMA, new SchemaSettingsDefinition(null, null, 5L, null));
+		try {
+			service.bulkBuildMappedDocuments(SCHEMA, INDEX,
+					lines("{\"$id$\":\"6\"}", "{\"$id$\":\"7\"}", "{\"$id$\":\"8\"}", "{\"$id$\":\"9\"}",
+							"{\"$id$\":\"10\"}", "{\"$id$\":\"11\"}"), null);
+			Assert.fail("The bulk build should exceed the size of the schema");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+		Assert.assertEquals(Long.valueOf(4), service.getIndex(SCHEMA, INDEX).num_docs);
+	}
+}
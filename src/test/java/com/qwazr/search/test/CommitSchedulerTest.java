@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CommitSchedulerTest {
+
+	private final static String SCHEMA = "commit_schema";
+	private final static String INDEX = "commit_index";
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("CommitSchedulerTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		// The interval is never reached during the test: only the waiting writes are committed
+		service.createUpdateIndex(SCHEMA, INDEX, IndexSettingsDefinition.of().commitIntervalMs(3600000L).build());
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		service.setFields(SCHEMA, INDEX, fields);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static Map<String, Object> document(final String id) {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, id);
+		return document;
+	}
+
+	@Test
+	public void test100GroupedWrite() {
+		Assert.assertEquals(Integer.valueOf(1), service.postMappedDocument(SCHEMA, INDEX, document("1")));
+	}
+
+	@Test
+	public void test200WaitForCommit() {
+		Assert.assertEquals(Integer.valueOf(1),
+				service.postMappedDocuments(SCHEMA, INDEX, Collections.singletonList(document("2")), true));
+		Assert.assertEquals(Long.valueOf(2), service.getIndex(SCHEMA, INDEX).num_docs);
+	}
+}
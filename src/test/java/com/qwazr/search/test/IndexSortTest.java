@@ -0,0 +1,180 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.QueryBuilder;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IndexSortTest {
+
+	private final static String SCHEMA = "sort_schema";
+	private final static String INDEX = "sort_index";
+	private final static String UNSORTED_INDEX = "unsorted_index";
+	private final static String RANK = "rank";
+
+	private final static int DOCUMENTS = 900;
+	private final static int SEGMENTS = 3;
+	private final static int THRESHOLD = 50;
+	private final static int ROWS = 5;
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("IndexSortTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		// The index sort is set before its field
+		service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().indexSort(RANK, QueryDefinition.SortEnum.descending).build());
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static Map<String, Object> document(final String id, final long rank) {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, id);
+		document.put(RANK, rank);
+		return document;
+	}
+
+	private static List<Map<String, Object>> documents(final int start, final int count) {
+		final List<Map<String, Object>> documents = new ArrayList<>(count);
+		for (int i = start; i < start + count; i++)
+			documents.add(document(Integer.toString(i), i));
+		return documents;
+	}
+
+	private static LinkedHashMap<String, FieldDefinition> fields() {
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		fields.put(RANK, new FieldDefinition.Builder(FieldDefinition.Template.SortedLongDocValuesField).build());
+		return fields;
+	}
+
+	private static ResultDefinition.WithMap searchByRank(final Integer trackTotalHits) {
+		return service.searchQuery(SCHEMA, INDEX,
+				new QueryBuilder(new MatchAllDocsQuery()).sort(RANK, QueryDefinition.SortEnum.descending)
+						.returnedField(RANK)
+						.rows(ROWS)
+						.trackTotalHits(trackTotalHits)
+						.build(), null);
+	}
+
+	private static void checkTopRanks(final ResultDefinition.WithMap result) {
+		Assert.assertEquals(ROWS, result.documents.size());
+		for (int i = 0; i < ROWS; i++)
+			Assert.assertEquals(DOCUMENTS - 1 - i, ((Number) result.documents.get(i).fields.get(RANK)).longValue());
+	}
+
+	@Test
+	public void test100UndefinedFields() {
+		try {
+			service.postMappedDocument(SCHEMA, INDEX, document("0", 0));
+			Assert.fail("The document should be rejected");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void test200DefinedFields() {
+		service.setFields(SCHEMA, INDEX, fields());
+		// Each committed batch is written in its own sorted segment
+		final int batch = DOCUMENTS / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++)
+			service.postMappedDocuments(SCHEMA, INDEX, documents(i * batch, batch), true);
+		Assert.assertEquals(Long.valueOf(DOCUMENTS), service.getIndex(SCHEMA, INDEX).num_docs);
+		Assert.assertTrue(service.getIndex(SCHEMA, INDEX).number_of_segment > 1);
+	}
+
+	@Test
+	public void test300SortedSearch() {
+		// Without track_total_hits every hit is counted
+		final ResultDefinition.WithMap result = searchByRank(null);
+		Assert.assertNotEquals(Boolean.TRUE, result.total_hits_approximate);
+		Assert.assertEquals(Long.valueOf(DOCUMENTS), result.total_hits);
+		checkTopRanks(result);
+	}
+
+	@Test
+	public void test310EarlyTermination() {
+		final ResultDefinition.WithMap result = searchByRank(THRESHOLD);
+		// The segments have been terminated once the threshold was reached
+		Assert.assertEquals(Boolean.TRUE, result.total_hits_approximate);
+		Assert.assertTrue(result.total_hits >= THRESHOLD);
+		Assert.assertTrue(result.total_hits < DOCUMENTS);
+		checkTopRanks(result);
+	}
+
+	@Test
+	public void test400AddIndexSortToNonEmptyIndex() {
+		service.createUpdateIndex(SCHEMA, UNSORTED_INDEX, null);
+		service.setFields(SCHEMA, UNSORTED_INDEX, fields());
+		service.postMappedDocuments(SCHEMA, UNSORTED_INDEX, documents(0, 10), true);
+		try {
+			service.createUpdateIndex(SCHEMA, UNSORTED_INDEX,
+					IndexSettingsDefinition.of().indexSort(RANK, QueryDefinition.SortEnum.descending).build());
+			Assert.fail("The index sort should be rejected");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+		// The index can still be opened and written
+		service.postMappedDocuments(SCHEMA, UNSORTED_INDEX, documents(10, 10), true);
+		Assert.assertEquals(Long.valueOf(20), service.getIndex(SCHEMA, UNSORTED_INDEX).num_docs);
+	}
+}
@@ -24,6 +24,7 @@ import com.qwazr.search.index.IndexInstance;
 import com.qwazr.search.index.IndexServiceInterface;
 import com.qwazr.search.index.IndexSettingsDefinition;
 import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.PostStreamStatus;
 import com.qwazr.search.index.QueryBuilder;
 import com.qwazr.search.index.QueryDefinition;
 import com.qwazr.search.index.ResultDefinition;
@@ -45,10 +46,12 @@ import org.junit.runners.MethodSorters;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -568,6 +571,24 @@ public abstract class JsonAbstractTest {
 		}
 	}
 
+	@Test
+	public void test310UpdateDocsStream() throws URISyntaxException, IOException {
+		final IndexServiceInterface client = getClient();
+		final List<String> lines = new ArrayList<>();
+		for (Map<String, Object> doc : UPDATE_DOCS)
+			lines.add(JsonMapper.MAPPER.writeValueAsString(doc));
+		lines.add(1, "{ malformed");
+		final PostStreamStatus status = client.postMappedDocuments(SCHEMA_NAME, INDEX_MASTER_NAME,
+				new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), true);
+		Assert.assertNotNull(status);
+		Assert.assertEquals(Integer.valueOf(UPDATE_DOCS.size()), status.count);
+		Assert.assertEquals(Integer.valueOf(lines.size()), status.lines);
+		Assert.assertEquals(Integer.valueOf(1), status.error_count);
+		Assert.assertEquals(Integer.valueOf(2), status.errors.get(0).line);
+		// The documents already exist, they are replaced
+		checkAllSizes(client, 5);
+	}
+
 	@Test
 	public void test350UpdateDocValue() throws URISyntaxException, IOException {
 		final IndexServiceInterface client = getClient();
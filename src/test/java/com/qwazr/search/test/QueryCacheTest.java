@@ -0,0 +1,164 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.QueryBuilder;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.TermQuery;
+import com.qwazr.search.query.TermsQuery;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class QueryCacheTest {
+
+	private final static String SCHEMA = "cache_schema";
+	private final static String INDEX = "cache_index";
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("QueryCacheTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().resultCacheMaxEntries(100).queryPlanCacheSize(100).build());
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		fields.put("category",
+				new FieldDefinition.Builder(FieldDefinition.Template.StringField).stored(true).build());
+		service.setFields(SCHEMA, INDEX, fields);
+		final List<Map<String, Object>> documents = new ArrayList<>();
+		documents.add(document("1", "a"));
+		documents.add(document("2", "b"));
+		documents.add(document("3", "b"));
+		service.postMappedDocuments(SCHEMA, INDEX, documents);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static Map<String, Object> document(final String id, final String category) {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, id);
+		document.put("category", category);
+		return document;
+	}
+
+	private static ResultDefinition.WithMap searchTerms(final String term) {
+		// The terms given to the builder are not part of the JSON form of the query
+		final TermsQuery query = TermsQuery.of("category").add(term).build();
+		return service.searchQuery(SCHEMA, INDEX, new QueryBuilder(query).build(), null);
+	}
+
+	@Test
+	public void test100ResultCacheBuilderQueries() {
+		Assert.assertEquals(Long.valueOf(1), searchTerms("a").total_hits);
+		Assert.assertEquals(Long.valueOf(2), searchTerms("b").total_hits);
+		Assert.assertEquals(Long.valueOf(1), searchTerms("a").total_hits);
+	}
+
+	@Test
+	public void test110ResultCacheCopy() {
+		final QueryBuilder builder = new QueryBuilder(new TermQuery("category", "b"));
+		final long hits = service.getIndex(SCHEMA, INDEX).result_cache.hit_count;
+		final ResultDefinition.WithMap first = service.searchQuery(SCHEMA, INDEX, builder.build(), null);
+		final ResultDefinition.WithMap second = service.searchQuery(SCHEMA, INDEX, builder.build(), null);
+		Assert.assertEquals(Long.valueOf(2), first.total_hits);
+		Assert.assertEquals(Long.valueOf(2), second.total_hits);
+		Assert.assertEquals(hits + 1, service.getIndex(SCHEMA, INDEX).result_cache.hit_count.longValue());
+		// The cached result is a copy with its own timer
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(first.timer, second.timer);
+	}
+
+	@Test
+	public void test120ResultCacheWaitForSeqNo() {
+		final long hits = service.getIndex(SCHEMA, INDEX).result_cache.hit_count;
+		final TermQuery query = new TermQuery("category", "a");
+		service.searchQuery(SCHEMA, INDEX, new QueryBuilder(query).waitForSeqNo(0L).build(), null);
+		service.searchQuery(SCHEMA, INDEX, new QueryBuilder(query).waitForSeqNo(1L).build(), null);
+		// The sequence number is not part of the key
+		Assert.assertEquals(hits + 1, service.getIndex(SCHEMA, INDEX).result_cache.hit_count.longValue());
+	}
+
+	@Test
+	public void test130ResultCacheInvalidatedByFields() {
+		searchTerms("a");
+		Assert.assertTrue(service.getIndex(SCHEMA, INDEX).result_cache.entries > 0);
+		service.setFields(SCHEMA, INDEX, service.getFields(SCHEMA, INDEX));
+		Assert.assertEquals(0, service.getIndex(SCHEMA, INDEX).result_cache.entries.intValue());
+	}
+
+	private static ResultDefinition.WithMap searchTermsPlan(final String term) {
+		final TermsQuery query = TermsQuery.of("category").add(term).build();
+		return service.searchQuery(SCHEMA, INDEX, new QueryBuilder(query).bypassCache(true).build(), null);
+	}
+
+	@Test
+	public void test200PlanCacheBuilderQueries() {
+		final int entries = service.getIndex(SCHEMA, INDEX).plan_cache.entries;
+		Assert.assertEquals(Long.valueOf(1), searchTermsPlan("a").total_hits);
+		Assert.assertEquals(Long.valueOf(2), searchTermsPlan("b").total_hits);
+		Assert.assertEquals(Long.valueOf(1), searchTermsPlan("a").total_hits);
+		Assert.assertEquals(entries, service.getIndex(SCHEMA, INDEX).plan_cache.entries.intValue());
+	}
+
+	@Test
+	public void test210PlanCacheJsonQueries() {
+		final QueryBuilder builder = new QueryBuilder(new TermQuery("category", "a")).bypassCache(true);
+		final int entries = service.getIndex(SCHEMA, INDEX).plan_cache.entries;
+		Assert.assertEquals(Long.valueOf(1), service.searchQuery(SCHEMA, INDEX, builder.build(), null).total_hits);
+		Assert.assertEquals(Long.valueOf(1), service.searchQuery(SCHEMA, INDEX, builder.build(), null).total_hits);
+		Assert.assertEquals(entries + 1, service.getIndex(SCHEMA, INDEX).plan_cache.entries.intValue());
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.QueryBuilder;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ReadYourWritesTest {
+
+	private final static String SCHEMA = "ryw_schema";
+	private final static String INDEX = "ryw_index";
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("ReadYourWritesTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		// The background refresh is far away: only a search waiting for a write refreshes the searcher
+		service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().nrtMaxStaleMs(600000L).commitIntervalMs(600000L).build());
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		service.setFields(SCHEMA, INDEX, fields);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static Long countAll(final Long waitForSeqNo) {
+		return service.searchQuery(SCHEMA, INDEX,
+				new QueryBuilder(new MatchAllDocsQuery()).waitForSeqNo(waitForSeqNo).build(), null).total_hits;
+	}
+
+	@Test
+	public void test100ReadYourWrites() {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, "1");
+		Assert.assertEquals(Integer.valueOf(1), service.postMappedDocument(SCHEMA, INDEX, document));
+		final Long seqNo = service.getSequenceNumber(SCHEMA, INDEX);
+		Assert.assertNotNull(seqNo);
+		// The searcher is not refreshed yet
+		Assert.assertEquals(Long.valueOf(0), countAll(null));
+		// Waiting for the sequence number opens a searcher covering the write
+		Assert.assertEquals(Long.valueOf(1), countAll(seqNo));
+	}
+
+	@Test
+	public void test110SequenceNumberIncreases() {
+		final Long before = service.getSequenceNumber(SCHEMA, INDEX);
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, "2");
+		service.postMappedDocument(SCHEMA, INDEX, document);
+		final Long after = service.getSequenceNumber(SCHEMA, INDEX);
+		Assert.assertTrue(after > before);
+		Assert.assertEquals(Long.valueOf(2), countAll(after));
+	}
+
+	@Test
+	public void test120UnknownSequenceNumber() {
+		final long unknown = service.getSequenceNumber(SCHEMA, INDEX) + 1000;
+		try {
+			countAll(unknown);
+			Assert.fail("The unknown sequence number should be rejected");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(400, e.getResponse().getStatus());
+		}
+	}
+}
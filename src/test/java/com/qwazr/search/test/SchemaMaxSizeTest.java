@@ -0,0 +1,111 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.SchemaSettingsDefinition;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SchemaMaxSizeTest {
+
+	private final static String SCHEMA = "max_size_schema";
+	private final static String INDEX = "max_size_index";
+	private final static long MAX_SIZE = 3;
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("SchemaMaxSizeTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA, new SchemaSettingsDefinition(null, null, MAX_SIZE, null));
+		// The searcher is not refreshed by the writes: the replaced documents stay in the pending count
+		service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().nrtMaxStaleMs(600000L).commitIntervalMs(600000L).build());
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		service.setFields(SCHEMA, INDEX, fields);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static Integer post(final String id) {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, id);
+		return service.postMappedDocument(SCHEMA, INDEX, document);
+	}
+
+	@Test
+	public void test100FillTheSchema() {
+		for (long i = 0; i < MAX_SIZE; i++)
+			Assert.assertEquals(Integer.valueOf(1), post(Long.toString(i)));
+	}
+
+	@Test
+	public void test200ReplacementsAreAccepted() {
+		// Without the exact recount, the pending replacements would exceed the limit
+		for (int i = 0; i < 5; i++)
+			Assert.assertEquals(Integer.valueOf(1), post("0"));
+		Assert.assertEquals(MAX_SIZE, service.getIndex(SCHEMA, INDEX).num_docs.longValue());
+	}
+
+	@Test
+	public void test300NewDocumentIsRejected() {
+		try {
+			post("new");
+			Assert.fail("The schema limit should be enforced");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), e.getResponse().getStatus());
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.IndexStatus;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TaxonomyCacheSettingsTest {
+
+	private final static String SCHEMA = "taxonomy_cache_schema";
+	private final static String INDEX = "taxonomy_cache_index";
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("TaxonomyCacheSettingsTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static void checkRejected(final IndexSettingsDefinition settings) {
+		try {
+			service.createUpdateIndex(SCHEMA, INDEX, settings);
+			Assert.fail("The settings should be rejected");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getResponse().getStatus());
+		}
+	}
+
+	@Test
+	public void test100ValidSettings() {
+		final IndexStatus status = service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().taxonomyWriterCacheSize(100).taxonomyFrontCacheSize(10).build());
+		Assert.assertNotNull(status.taxonomy_cache);
+		Assert.assertEquals(Integer.valueOf(10), status.taxonomy_cache.front_cache_size);
+	}
+
+	@Test
+	public void test200NegativeWriterCacheSize() {
+		checkRejected(IndexSettingsDefinition.of().taxonomyWriterCacheSize(-1).build());
+		checkRejected(IndexSettingsDefinition.of().taxonomyWriterCacheSize(0).build());
+	}
+
+	@Test
+	public void test210NegativeFrontCacheSize() {
+		checkRejected(IndexSettingsDefinition.of().taxonomyFrontCacheSize(-1).build());
+	}
+
+	@Test
+	public void test300SettingsNotPersisted() throws IOException {
+		// The rejected settings were not written: the index reopens with the valid ones
+		indexManager.close();
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		final IndexStatus status = service.getIndex(SCHEMA, INDEX);
+		Assert.assertEquals(Integer.valueOf(100), status.settings.taxonomyWriterCacheSize);
+		Assert.assertEquals(Integer.valueOf(10), status.taxonomy_cache.front_cache_size);
+	}
+}
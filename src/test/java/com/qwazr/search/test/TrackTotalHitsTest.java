@@ -0,0 +1,161 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.QueryBuilder;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.AbstractQuery;
+import com.qwazr.search.query.ConstantScoreQuery;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The counting of the hits is checked on an index with a single segment, and on an index with several segments
+ * whose slices are searched in parallel.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TrackTotalHitsTest {
+
+	private final static String SCHEMA = "track_schema";
+	private final static String SINGLE_SEGMENT = "single_segment";
+	private final static String MULTI_SEGMENTS = "multi_segments";
+
+	private final static int DOCUMENTS = 1000;
+	private final static int SEGMENTS = 4;
+	private final static int THRESHOLD = 100;
+	private final static int ROWS = 10;
+
+	private static ExecutorService executor;
+	private static Path workDirectory;
+	private static IndexManager indexManager;
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		workDirectory = Files.createTempDirectory("TrackTotalHitsTest");
+		indexManager = new IndexManager(null, workDirectory, executor);
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		for (String index : new String[] { SINGLE_SEGMENT, MULTI_SEGMENTS }) {
+			service.createUpdateIndex(SCHEMA, index, null);
+			service.setFields(SCHEMA, index, fields);
+		}
+		service.postMappedDocuments(SCHEMA, SINGLE_SEGMENT, documents(0, DOCUMENTS), true);
+		// Each committed batch is written in its own segment
+		final int batch = DOCUMENTS / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++)
+			service.postMappedDocuments(SCHEMA, MULTI_SEGMENTS, documents(i * batch, batch), true);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (indexManager != null) {
+			indexManager.close();
+			indexManager = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+
+	private static List<Map<String, Object>> documents(final int start, final int count) {
+		final List<Map<String, Object>> documents = new ArrayList<>(count);
+		for (int i = start; i < start + count; i++) {
+			final Map<String, Object> document = new HashMap<>();
+			document.put(FieldDefinition.ID_FIELD, Integer.toString(i));
+			documents.add(document);
+		}
+		return documents;
+	}
+
+	private static ResultDefinition.WithMap search(final String index, final AbstractQuery query, final int rows,
+			final Integer trackTotalHits) {
+		return service.searchQuery(SCHEMA, index,
+				new QueryBuilder(query).rows(rows).trackTotalHits(trackTotalHits).build(), null);
+	}
+
+	private static void checkApproximate(final ResultDefinition.WithMap result, final int rows) {
+		Assert.assertEquals(Boolean.TRUE, result.total_hits_approximate);
+		Assert.assertTrue(result.total_hits >= THRESHOLD);
+		Assert.assertTrue(result.total_hits < DOCUMENTS);
+		Assert.assertEquals(rows, result.documents == null ? 0 : result.documents.size());
+	}
+
+	private static void checkExact(final ResultDefinition.WithMap result, final int rows) {
+		Assert.assertNotEquals(Boolean.TRUE, result.total_hits_approximate);
+		Assert.assertEquals(Long.valueOf(DOCUMENTS), result.total_hits);
+		Assert.assertEquals(rows, result.documents == null ? 0 : result.documents.size());
+	}
+
+	@Test
+	public void test000Segments() {
+		Assert.assertEquals(Integer.valueOf(1), service.getIndex(SCHEMA, SINGLE_SEGMENT).number_of_segment);
+		Assert.assertTrue(service.getIndex(SCHEMA, MULTI_SEGMENTS).number_of_segment > 1);
+	}
+
+	@Test
+	public void test100ConstantScore() {
+		for (String index : new String[] { SINGLE_SEGMENT, MULTI_SEGMENTS }) {
+			checkApproximate(search(index, new ConstantScoreQuery(new MatchAllDocsQuery()), ROWS, THRESHOLD), ROWS);
+			checkExact(search(index, new ConstantScoreQuery(new MatchAllDocsQuery()), ROWS, null), ROWS);
+		}
+	}
+
+	@Test
+	public void test200CountOnly() {
+		for (String index : new String[] { SINGLE_SEGMENT, MULTI_SEGMENTS }) {
+			checkApproximate(search(index, new MatchAllDocsQuery(), 0, THRESHOLD), 0);
+			checkExact(search(index, new MatchAllDocsQuery(), 0, null), 0);
+		}
+	}
+
+	@Test
+	public void test300NotPositiveThreshold() {
+		for (int trackTotalHits : new int[] { 0, -1 }) {
+			try {
+				search(SINGLE_SEGMENT, new MatchAllDocsQuery(), ROWS, trackTotalHits);
+				Assert.fail("The threshold should be rejected: " + trackTotalHits);
+			} catch (RuntimeException e) {
+				// Expected
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexManager;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TranslogTest {
+
+	private final static String SCHEMA = "translog_schema";
+	private final static String INDEX = "translog_index";
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	private static IndexServiceInterface open(final IndexManager indexManager) {
+		return open(indexManager, null);
+	}
+
+	private static IndexServiceInterface open(final IndexManager indexManager,
+			final IndexSettingsDefinition.InsertMode insertMode) {
+		final IndexServiceInterface service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA);
+		// The writes are only committed by the commit scheduler, or when the index is closed
+		service.createUpdateIndex(SCHEMA, INDEX,
+				IndexSettingsDefinition.of().translog(true).commitIntervalMs(3600000L).insertMode(insertMode).build());
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put(FieldDefinition.ID_FIELD, new FieldDefinition.Builder(FieldDefinition.Template.StringField).build());
+		fields.put("title", new FieldDefinition.Builder(FieldDefinition.Template.TextField).stored(true).build());
+		service.setFields(SCHEMA, INDEX, fields);
+		return service;
+	}
+
+	private static Map<String, Object> document(final String id, final String title) {
+		final Map<String, Object> document = new HashMap<>();
+		document.put(FieldDefinition.ID_FIELD, id);
+		document.put("title", title);
+		return document;
+	}
+
+	/**
+	 * A write done after a restart must be replayed after a crash: the IDs of the translog continue after
+	 * the ID stored in the last commit, even if the committed generations have been deleted.
+	 */
+	@Test
+	public void restartThenCrashReplay() throws IOException {
+		final Path workDirectory = Files.createTempDirectory("TranslogTest");
+		final Path crashDirectory = Files.createTempDirectory("TranslogTestCrash");
+
+		// First run: the write is committed when the index is closed
+		try (final IndexManager indexManager = new IndexManager(null, workDirectory, executor)) {
+			open(indexManager).postMappedDocument(SCHEMA, INDEX, document("1", "first"));
+		}
+
+		// Second run: the write is only in the translog when the crash happens
+		try (final IndexManager indexManager = new IndexManager(null, workDirectory, executor)) {
+			final IndexServiceInterface service = open(indexManager);
+			Assert.assertEquals(Long.valueOf(1), service.getIndex(SCHEMA, INDEX).num_docs);
+			service.postMappedDocument(SCHEMA, INDEX, document("2", "second"));
+			// The copy of the files of a running index is the state of the disk after a crash
+			FileUtils.copyDirectory(workDirectory.toFile(), crashDirectory.toFile());
+		}
+
+		// Recovery: the second write is replayed from the translog
+		try (final IndexManager indexManager = new IndexManager(null, crashDirectory, executor)) {
+			Assert.assertEquals(Long.valueOf(2), open(indexManager).getIndex(SCHEMA, INDEX).num_docs);
+		}
+
+		FileUtils.deleteQuietly(workDirectory.toFile());
+		FileUtils.deleteQuietly(crashDirectory.toFile());
+	}
+
+	/**
+	 * The replay of the updates of the same ID does not duplicate the document
+	 */
+	@Test
+	public void autoInsertModeReplay() throws IOException {
+		final Path workDirectory = Files.createTempDirectory("TranslogTest");
+		final Path crashDirectory = Files.createTempDirectory("TranslogTestCrash");
+
+		try (final IndexManager indexManager = new IndexManager(null, workDirectory, executor)) {
+			final IndexServiceInterface service = open(indexManager, IndexSettingsDefinition.InsertMode.auto);
+			service.postMappedDocument(SCHEMA, INDEX, document("1", "first"));
+			service.postMappedDocument(SCHEMA, INDEX, document("1", "updated"));
+			FileUtils.copyDirectory(workDirectory.toFile(), crashDirectory.toFile());
+		}
+
+		try (final IndexManager indexManager = new IndexManager(null, crashDirectory, executor)) {
+			Assert.assertEquals(Long.valueOf(1),
+					open(indexManager, IndexSettingsDefinition.InsertMode.auto).getIndex(SCHEMA, INDEX).num_docs);
+		}
+
+		FileUtils.deleteQuietly(workDirectory.toFile());
+		FileUtils.deleteQuietly(crashDirectory.toFile());
+	}
+
+	/**
+	 * An append only index would duplicate the replayed documents already included in the last commit
+	 */
+	@Test
+	public void appendOnlyInsertModeRejected() throws IOException {
+		final Path workDirectory = Files.createTempDirectory("TranslogTest");
+		try (final IndexManager indexManager = new IndexManager(null, workDirectory, executor)) {
+			try {
+				open(indexManager, IndexSettingsDefinition.InsertMode.append_only);
+				Assert.fail("The append_only insert mode should be rejected");
+			} catch (RuntimeException e) {
+				// Expected
+			}
+		}
+		FileUtils.deleteQuietly(workDirectory.toFile());
+	}
+}